@@ -0,0 +1,84 @@
+package com.lee.framework.servlet;
+
+import com.lee.framework.annotation.MyRequestBody;
+import com.lee.framework.annotation.MyRequestParam;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 基准测试用的handler，方法名中的数字为绑定的请求参数个数
+ * 参数值累加到sink中，避免JIT把参数绑定当作无用代码消除
+ */
+public class BenchmarkController {
+
+    public long sink;
+
+    public void p0() {
+        sink++;
+    }
+
+    public void p1(@MyRequestParam("a") String a) {
+        sink += a.length();
+    }
+
+    public void p4(@MyRequestParam("a") String a, @MyRequestParam("b") int b,
+                   @MyRequestParam("c") long c, @MyRequestParam("d") boolean d) {
+        sink += a.length() + b + c + (d ? 1 : 0);
+    }
+
+    public void p8(@MyRequestParam("a") String a, @MyRequestParam("b") int b,
+                   @MyRequestParam("c") long c, @MyRequestParam("d") boolean d,
+                   @MyRequestParam("e") double e, @MyRequestParam("f") Integer f,
+                   @MyRequestParam("g") String g, @MyRequestParam("h") int[] h) {
+        sink += a.length() + b + c + (d ? 1 : 0) + (long) e + f + g.length() + h.length;
+    }
+
+    public void body(@MyRequestBody Order order) {
+        sink += order.id + order.items.size();
+    }
+
+    public void form(Order order) {
+        sink += order.id + order.name.length();
+    }
+
+    /**
+     * @return 名为name的handler方法
+     */
+    static Method method(String name) {
+        for (Method method : BenchmarkController.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("no handler method " + name);
+    }
+
+    /**
+     * 请求体绑定的POJO
+     */
+    public static class Order {
+        public long id;
+        public String name;
+        public boolean paid;
+        public List<Item> items;
+    }
+
+    public static class Item {
+        public String sku;
+        public int quantity;
+        public double price;
+    }
+
+    /**
+     * @return 绑定paramCount个请求参数的handler方法
+     */
+    static Method method(int paramCount) {
+        for (Method method : BenchmarkController.class.getMethods()) {
+            if (method.getName().equals("p" + paramCount)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("no handler method with " + paramCount + " parameters");
+    }
+}
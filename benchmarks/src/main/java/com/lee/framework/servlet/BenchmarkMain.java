@@ -0,0 +1,23 @@
+package com.lee.framework.servlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * benchmarks.jar的入口，参数与org.openjdk.jmh.Main相同
+ * 没有指定结果格式(-rf)时，以JSON格式把结果写入jmh-result.json，便于与之前的结果比较
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(Arrays.asList("-rf", "json"));
+            if (!jmhArgs.contains("-rff")) {
+                jmhArgs.addAll(Arrays.asList("-rff", "jmh-result.json"));
+            }
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,181 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的请求，只实现dispatcher用到的方法，其他方法抛出UnsupportedOperationException
+ * 请求参数、请求头、请求体在创建后不再改变，可以在多次调用之间复用(每次getInputStream()从头读取请求体)
+ */
+class BenchmarkRequest extends HttpServletRequestWrapper {
+
+    //未实现的方法都委托给它
+    private static final HttpServletRequest UNSUPPORTED = (HttpServletRequest) Proxy.newProxyInstance(
+            BenchmarkRequest.class.getClassLoader(), new Class[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException("BenchmarkRequest." + method.getName());
+            });
+
+    private final String method;
+    private final String requestURI;
+    private final String queryString;
+    private final Map<String, String[]> parameters = new LinkedHashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private byte[] body;
+
+    /**
+     * @param url 请求url，可以带查询字符串，如"/user/list.json?page=1&size=10"
+     */
+    BenchmarkRequest(String method, String url) {
+        super(UNSUPPORTED);
+        this.method = method;
+        int question = url.indexOf('?');
+        this.requestURI = question < 0 ? url : url.substring(0, question);
+        this.queryString = question < 0 ? null : url.substring(question + 1);
+        if (queryString != null) {
+            for (String pair : queryString.split("&")) {
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                String[] old = parameters.get(name);
+                String[] values = old == null ? new String[1] : Arrays.copyOf(old, old.length + 1);
+                values[values.length - 1] = value;
+                parameters.put(name, values);
+            }
+        }
+    }
+
+    BenchmarkRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    BenchmarkRequest body(String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return -1;
+    }
+
+    @Override
+    public String getContentType() {
+        return headers.get("Content-Type");
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body == null ? -1 : body.length;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        byte[] bytes = body == null ? new byte[0] : body;
+        return new ServletInputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < bytes.length ? bytes[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos == bytes.length) {
+                    return -1;
+                }
+                int n = Math.min(len, bytes.length - pos);
+                System.arraycopy(bytes, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return pos == bytes.length;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        attributes.put(name, o);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的响应，只统计输出的字节数，不保存响应体
+ * 只实现dispatcher用到的方法，其他方法抛出UnsupportedOperationException，每次调用前reset()后复用
+ */
+class BenchmarkResponse extends HttpServletResponseWrapper {
+
+    //未实现的方法都委托给它
+    private static final HttpServletResponse UNSUPPORTED = (HttpServletResponse) Proxy.newProxyInstance(
+            BenchmarkResponse.class.getClassLoader(), new Class[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException("BenchmarkResponse." + method.getName());
+            });
+
+    private final Map<String, String> headers = new HashMap<>();
+    private int status;
+    private String contentType;
+    //已输出的字节数
+    private long bytes;
+
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    };
+    private PrintWriter writer;
+
+    BenchmarkResponse() {
+        super(UNSUPPORTED);
+        reset();
+    }
+
+    /**
+     * 清空状态码、响应头和已输出的字节数
+     */
+    @Override
+    public void reset() {
+        headers.clear();
+        status = SC_OK;
+        contentType = null;
+        bytes = 0;
+        writer = null;
+    }
+
+    /**
+     * @return 已输出的字节数，getWriter()写入的内容flush后才计入
+     */
+    long getBytes() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return bytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.merge(name, value, (old, added) -> old + "," + added);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        headers.put(name, String.valueOf(date));
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void flushBuffer() {
+    }
+
+    @Override
+    public void resetBuffer() {
+    }
+}
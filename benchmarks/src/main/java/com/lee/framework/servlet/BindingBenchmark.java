@@ -0,0 +1,50 @@
+package com.lee.framework.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * HandlerAdapter.handle：绑定0/1/4/8个请求参数(String、基本类型、包装类型、数组)并调用handler方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+
+    @Param({"0", "1", "4", "8"})
+    public int parameters;
+
+    private Handler handler;
+    private HandlerAdapter adapter;
+    private BenchmarkRequest request;
+    private BenchmarkResponse response;
+
+    @Setup
+    public void setup() {
+        MyDispatcherServlet servlet = new MyDispatcherServlet();
+        handler = new Handler(new BenchmarkController(), BenchmarkController.method(parameters), Pattern.compile("/bind"));
+        adapter = servlet.createHandlerAdapter(handler);
+        request = new BenchmarkRequest("GET", "/bind?a=hello&b=42&c=1234567890123&d=true&e=3.14&f=7&g=world&h=1&h=2&h=3");
+        response = new BenchmarkResponse();
+    }
+
+    @Benchmark
+    public MyModelAndView handle() throws Exception {
+        return adapter.handle(request, response, handler);
+    }
+}
@@ -0,0 +1,123 @@
+package com.lee.framework.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的请求分发：MyDispatcherServlet.doDispatcher处理demo中TestController的请求
+ * 使用主工程的application.properties，即开启了响应缓存、ETag、压缩和metrics的配置
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    //demo中的视图,打包在jar中时无法按目录加载,解压到临时文件后注册
+    private static final String VIEW = "test.myml";
+
+    private MyDispatcherServlet servlet;
+    private File template;
+    private BenchmarkRequest json;
+    private BenchmarkRequest modelAndView;
+    private BenchmarkRequest regex;
+    private BenchmarkResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        servlet = new MyDispatcherServlet();
+        servlet.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "benchmark";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return "contextConfigLocation".equals(name) ? "classpath:application.properties" : null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.enumeration(Collections.singletonList("contextConfigLocation"));
+            }
+        });
+        if (servlet.getViewRegistry().resolve(VIEW, null) == null) {
+            template = File.createTempFile("benchmark", ".myml");
+            try (InputStream in = DispatchBenchmark.class.getClassLoader().getResourceAsStream("layouts/" + VIEW)) {
+                Files.copy(in, template.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            servlet.getViewRegistry().register(new ViewResolver(VIEW, template));
+        }
+
+        json = new BenchmarkRequest("GET", "/testJson.json?name=lee&ids=1&ids=2&ids=3");
+        modelAndView = new BenchmarkRequest("GET", "/testModelAndView.json?name=lee&description=benchmark")
+                .header("Accept-Encoding", "gzip");
+        regex = new BenchmarkRequest("POST", "/test1/hello.json?msg=hello");
+        response = new BenchmarkResponse();
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+        if (template != null) {
+            template.delete();
+        }
+    }
+
+    /**
+     * 标注了@MyCacheable的JSON接口,除第一次外都命中响应缓存
+     */
+    @Benchmark
+    public long cachedJson() throws Exception {
+        return dispatch(json);
+    }
+
+    /**
+     * 绑定参数、渲染视图、生成ETag
+     */
+    @Benchmark
+    public long modelAndView() throws Exception {
+        return dispatch(modelAndView);
+    }
+
+    /**
+     * 正则url,handler直接写入响应
+     */
+    @Benchmark
+    public long regexRoute() throws Exception {
+        return dispatch(regex);
+    }
+
+    private long dispatch(BenchmarkRequest request) throws Exception {
+        response.reset();
+        servlet.doDispatcher(request, response);
+        return response.getBytes();
+    }
+}
@@ -0,0 +1,63 @@
+package com.lee.framework.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * HandlerAdapter.handle：@MyRequestBody从输入流反序列化含1/10/100个元素的JSON请求体，及按属性名把表单参数绑定到POJO
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBodyBenchmark {
+
+    //JSON请求体中items的个数,为0时绑定表单参数
+    @Param({"0", "1", "10", "100"})
+    public int items;
+
+    private Handler handler;
+    private HandlerAdapter adapter;
+    private BenchmarkRequest request;
+    private BenchmarkResponse response;
+
+    @Setup
+    public void setup() {
+        MyDispatcherServlet servlet = new MyDispatcherServlet();
+        handler = new Handler(new BenchmarkController(), BenchmarkController.method(items == 0 ? "form" : "body"),
+                Pattern.compile("/order"));
+        adapter = servlet.createHandlerAdapter(handler);
+        if (items == 0) {
+            request = new BenchmarkRequest("POST", "/order?id=42&name=hello&paid=true")
+                    .header("Content-Type", "application/x-www-form-urlencoded");
+        } else {
+            StringBuilder body = new StringBuilder("{\"id\":42,\"name\":\"hello\",\"paid\":true,\"items\":[");
+            for (int i = 0; i < items; i++) {
+                body.append(i == 0 ? "" : ",").append("{\"sku\":\"SKU-").append(i)
+                        .append("\",\"quantity\":").append(i + 1).append(",\"price\":").append(i).append(".99}");
+            }
+            request = new BenchmarkRequest("POST", "/order").header("Content-Type", "application/json")
+                    .body(body.append("]}").toString());
+        }
+        response = new BenchmarkResponse();
+    }
+
+    @Benchmark
+    public MyModelAndView handle() throws Exception {
+        return adapter.handle(request, response, handler);
+    }
+}
@@ -0,0 +1,69 @@
+package com.lee.framework.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * MyDispatcherServlet.getHandler：在10/100/1000个映射中查找handler
+ * 每10个映射中有1个是正则url(如"/files/r7/.*\.json")，其余为字面量url(如"/api/r3/items")
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int mappings;
+
+    private MyDispatcherServlet servlet;
+    private BenchmarkRequest literal;
+    private BenchmarkRequest regex;
+    private BenchmarkRequest miss;
+
+    @Setup
+    public void setup() {
+        servlet = new MyDispatcherServlet();
+        BenchmarkController controller = new BenchmarkController();
+        Method method = BenchmarkController.method(0);
+        for (int i = 0; i < mappings; i++) {
+            String url = i % 10 == 9 ? "/files/r" + i + "/.*\\.json" : "/api/r" + i + "/items";
+            servlet.registerHandler(url, new Handler(controller, method, Pattern.compile(url)));
+        }
+        //最后注册的字面量url和正则url
+        int last = mappings - 1;
+        literal = new BenchmarkRequest("GET", "/api/r" + (last - 1) + "/items");
+        regex = new BenchmarkRequest("GET", "/files/r" + last + "/report.json");
+        miss = new BenchmarkRequest("GET", "/api/unknown/items");
+    }
+
+    @Benchmark
+    public Handler literal() {
+        return servlet.getHandler(literal);
+    }
+
+    @Benchmark
+    public Handler regex() {
+        return servlet.getHandler(regex);
+    }
+
+    @Benchmark
+    public Handler miss() {
+        return servlet.getHandler(miss);
+    }
+}
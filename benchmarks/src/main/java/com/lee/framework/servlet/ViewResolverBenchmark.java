@@ -0,0 +1,78 @@
+package com.lee.framework.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ViewResolver.parse：渲染小模板(约100字节、3个占位符)和大模板(约70KB、1000个占位符)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewResolverBenchmark {
+
+    @Param({"small", "large"})
+    public String template;
+
+    private File file;
+    private ViewResolver viewResolver;
+    private MyModelAndView modelAndView;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if ("small".equals(template)) {
+            sb.append("<html><body><h1>@{title}</h1><p>My name is @{name}, description: @{description}</p></body></html>");
+        } else {
+            sb.append("<html><body><h1>@{title}</h1><table>\n");
+            for (int i = 0; i < 1000; i++) {
+                sb.append("<tr><td class=\"row\">").append(i).append("</td><td>@{name").append(i % 10)
+                        .append("}</td><td>static cell content</td></tr>\n");
+            }
+            sb.append("</table></body></html>");
+        }
+        file = File.createTempFile("benchmark", ".myml");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> model = new HashMap<>();
+        model.put("title", "benchmark");
+        model.put("name", "lee");
+        model.put("description", "view resolver");
+        for (int i = 0; i < 10; i++) {
+            model.put("name" + i, "value-" + i);
+        }
+        viewResolver = new ViewResolver(template, file);
+        modelAndView = new MyModelAndView(template, model);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public String parse() throws Exception {
+        return viewResolver.parse(modelAndView);
+    }
+}
@@ -1,6 +1,9 @@
 package com.lee.demo;
 
+import com.lee.framework.annotation.MyCacheable;
 import com.lee.framework.annotation.MyController;
+import com.lee.framework.annotation.MyPathVariable;
+import com.lee.framework.annotation.MyRequestBody;
 import com.lee.framework.annotation.MyRequestMapping;
 import com.lee.framework.annotation.MyRequestParam;
 import com.lee.framework.annotation.MyResponseBody;
@@ -11,11 +14,11 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @MyController("testController")
 public class TestController {
 
-    //TODO  @MyResponseBody未实现, 扫描到该注解直接使用response设置contentType输出即可
     @MyRequestMapping("/test1/.*.json")    // 正则urlPattern匹配"/test1/*.json"
     public void test1(HttpServletRequest request, HttpServletResponse response,
                      @MyRequestParam(value = "msg", required = false) String msg) throws IOException {
@@ -33,4 +36,51 @@ public class TestController {
         return new MyModelAndView("test.myml",model);
     }
 
+    @MyResponseBody    // 返回值序列化为JSON输出
+    @MyCacheable(ttl = 10000, key = {"name", "ids"})    // 相同参数的请求10秒内直接输出缓存的JSON
+    @MyRequestMapping("/testJson.json")
+    public Map<String, Object> testJson(@MyRequestParam(value = "name", required = false) String name,
+                                        @MyRequestParam(value = "ids", required = false) int[] ids) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", name);
+        result.put("ids", ids);
+        return result;
+    }
+
+    @MyResponseBody    // url模板,GET和POST分别由不同的handler处理
+    @MyRequestMapping(value = "/testUser/{id}.json", method = "GET")
+    public Map<String, Object> getUser(@MyPathVariable("id") long id) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", id);
+        result.put("name", "user" + id);
+        return result;
+    }
+
+    @MyResponseBody
+    @MyRequestMapping(value = "/testUser/{id}.json", method = "POST", consumes = "application/x-www-form-urlencoded")
+    public Map<String, Object> updateUser(@MyPathVariable("id") long id,
+                                          @MyRequestParam(value = "name", required = false) String name) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", id);
+        result.put("name", name);
+        result.put("updated", true);
+        return result;
+    }
+
+    @MyResponseBody    // JSON请求体流式反序列化为TestUser,表单请求体按属性名绑定
+    @MyRequestMapping(value = "/testUser.json", method = "POST")
+    public TestUser createUser(@MyRequestBody TestUser user) {
+        return user;
+    }
+
+    @MyRequestMapping("/testAsync.json")    // 返回CompletableFuture,不占用容器线程,完成时再输出视图
+    public CompletableFuture<MyModelAndView> testAsync(@MyRequestParam(value = "name", required = false) String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, Object> model = new HashMap<>();
+            model.put("name", name);
+            model.put("description", "async");
+            return new MyModelAndView("test.myml", model);
+        });
+    }
+
 }
@@ -0,0 +1,22 @@
+package com.lee.demo;
+
+import com.lee.framework.annotation.MyControllerAdvice;
+import com.lee.framework.annotation.MyExceptionHandler;
+import com.lee.framework.annotation.MyResponseBody;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@MyControllerAdvice
+public class TestControllerAdvice {
+
+    @MyResponseBody    // 请求参数无法转为参数类型(如ids=abc)时返回400和JSON格式的错误信息
+    @MyExceptionHandler(status = 400)
+    public Map<String, Object> handleIllegalArgument(IllegalArgumentException e) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", 400);
+        result.put("error", e.getMessage());
+        return result;
+    }
+
+}
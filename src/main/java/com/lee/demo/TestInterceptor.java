@@ -0,0 +1,31 @@
+package com.lee.demo;
+
+import com.lee.framework.annotation.MyInterceptor;
+import com.lee.framework.servlet.Handler;
+import com.lee.framework.servlet.HandlerInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@MyInterceptor(value = "/test.*", exclude = "/testJson.json")    // 拦截/test开头的url,/testJson.json除外(与handler的url相同,启动时即可确定)
+public class TestInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestInterceptor.class);
+
+    private static final String START = TestInterceptor.class.getName() + ".start";
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Handler handler) {
+        req.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Handler handler, Exception ex) {
+        long elapsed = System.nanoTime() - (Long) req.getAttribute(START);
+        logger.debug(req.getRequestURI() + " completed in " + elapsed / 1000 + "us" + (ex == null ? "" : ", failed: " + ex));
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.lee.demo;
+
+import java.util.List;
+
+/**
+ * @MyRequestBody的示例：由JSON请求体反序列化或由表单参数绑定
+ */
+public class TestUser {
+
+    private long id;
+    private String name;
+    private List<String> tags;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -8,7 +8,7 @@ import java.lang.annotation.*;
  * @Retention： 注解的保留位置　
  * @Document： 说明该注解将被包含在javadoc中
  */
-@Target(ElementType.FIELD)           // 属性字段、枚举的常量 上的注解
+@Target({ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.PARAMETER})  // 属性字段、构造器、构造器参数 上的注解
 @Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
 @Documented
 public @interface MyAutowired {      // 定义一个注解 @MyAutowired,一个注解是一个类
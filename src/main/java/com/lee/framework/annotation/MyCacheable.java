@@ -0,0 +1,21 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.METHOD)          // 方法 上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyCacheable {  //定义一个注解 @MyCacheable,缓存GET请求输出的响应,命中时不再绑定参数、调用handler和渲染视图
+
+    //缓存有效期(毫秒)
+    long ttl() default 60000;
+
+    //参与缓存key的请求参数名,为空时使用整个查询字符串
+    String[] key() default {};
+
+}
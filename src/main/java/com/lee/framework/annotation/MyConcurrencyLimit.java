@@ -0,0 +1,17 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})           // 类和方法 上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyConcurrencyLimit {  //定义一个注解 @MyConcurrencyLimit,限制handler同时处理的请求数,超出时直接返回503
+
+    int value();
+
+}
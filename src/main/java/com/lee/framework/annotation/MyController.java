@@ -14,4 +14,10 @@ public @interface MyController {   //定义一个注解 @MyController,一个注
 
     String value() default "";
 
+    //作用域：singleton(默认,只有一个实例)、prototype(每次获取都创建)、request(每个请求一个)
+    String scope() default "singleton";
+
+    //prototype/request作用域的对象池大小,请求结束时实例经Poolable.reset()重置后放回池中复用,0表示不池化
+    int poolSize() default 0;
+
 }
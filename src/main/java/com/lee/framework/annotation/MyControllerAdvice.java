@@ -0,0 +1,18 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.TYPE)            //接口、类、枚举、注解  上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyControllerAdvice {  //定义一个注解 @MyControllerAdvice,其中的@MyExceptionHandler方法处理所有controller抛出的异常
+
+    //beanName,默认为首字母小写的类名
+    String value() default "";
+
+}
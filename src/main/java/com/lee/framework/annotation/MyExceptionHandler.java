@@ -0,0 +1,21 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.METHOD)          // 方法 上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyExceptionHandler {  //定义一个注解 @MyExceptionHandler,标注在controller或@MyControllerAdvice类的方法上,处理handler抛出的异常
+
+    //处理的异常类型(含子类),为空时使用方法参数中的异常类型
+    Class<? extends Throwable>[] value() default {};
+
+    //响应的状态码
+    int status() default 500;
+
+}
@@ -0,0 +1,24 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.TYPE)            //接口、类、枚举、注解  上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyInterceptor {  //定义一个注解 @MyInterceptor,标注在实现了HandlerInterceptor的类上,注册为拦截器并指定拦截的url和顺序
+
+    //拦截的url正则,语法与@MyRequestMapping相同,为空时拦截所有handler
+    String[] value() default {};
+
+    //不拦截的url正则
+    String[] exclude() default {};
+
+    //执行顺序,小的先执行preHandle,后执行postHandle和afterCompletion
+    int order() default 0;
+
+}
@@ -0,0 +1,18 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.PARAMETER)           // 方法参数 上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyPathVariable {  //定义一个注解 @MyPathVariable,绑定@MyRequestMapping的url模板中"{变量名}"的值
+
+    //url模板中的变量名
+    String value() default "";
+
+}
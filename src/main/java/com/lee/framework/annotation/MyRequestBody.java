@@ -0,0 +1,18 @@
+package com.lee.framework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @Target: 注解的作用目标
+ * @Retention： 注解的保留位置　
+ * @Document： 说明该注解将被包含在javadoc中
+ */
+@Target(ElementType.PARAMETER)           // 方法参数 上的注解
+@Retention(RetentionPolicy.RUNTIME)  // 注解会在class字节码文件中存在，在运行时可以通过反射获取到
+@Documented
+public @interface MyRequestBody {  //定义一个注解 @MyRequestBody,把请求体(JSON或表单)转为参数的类型
+
+    //请求体为空时是否报错(400)
+    boolean required() default true;
+
+}
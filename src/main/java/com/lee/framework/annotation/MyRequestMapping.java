@@ -12,6 +12,16 @@ import java.lang.annotation.*;
 @Documented
 public @interface MyRequestMapping {  //定义一个注解 @MyRequestMapping,一个注解是一个类
 
+    //url正则,或含"{变量名}"的url模板,如"/user/{id}.json"
     String value() default "";
 
+    //请求方法,如"GET"、"POST",为空时不限制;方法上设置了时覆盖controller上的
+    String[] method() default {};
+
+    //请求的Content-Type,如"application/json"、"text/*",为空时不限制
+    String[] consumes() default {};
+
+    //请求头Accept中须可接受的类型,如"application/json",为空时不限制
+    String[] produces() default {};
+
 }
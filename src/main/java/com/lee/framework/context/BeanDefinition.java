@@ -0,0 +1,41 @@
+package com.lee.framework.context;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * bean的定义，保存创建一个bean所需的信息，由组件索引或扫描得到的类生成
+ * singleton的BeanDefinition只会创建一个实例，以它的所有beanId注册到ioc容器中
+ * prototype/request作用域的实例不放入ioc容器，每次getBean(或每个请求)创建，可以用对象池复用
+ */
+@Getter
+@AllArgsConstructor
+public class BeanDefinition {
+
+    // 作用域：整个容器只有一个实例(默认)
+    public static final String SCOPE_SINGLETON = "singleton";
+    // 作用域：每次getBean都创建一个实例
+    public static final String SCOPE_PROTOTYPE = "prototype";
+    // 作用域：每个请求一个实例
+    public static final String SCOPE_REQUEST = "request";
+
+    // bean的类
+    private final Class<?> beanClass;
+    // 注册到ioc容器中的beanId，至少有一个
+    private final String[] beanIds;
+    // 作用域
+    private final String scope;
+    // 是否延迟到第一次getBean时才创建，只对singleton有效
+    private final boolean lazy;
+    // prototype/request作用域的bean的对象池大小，0表示不池化
+    private final int poolSize;
+    // 构造器每个参数注入的beanId，无参构造器为空数组
+    private final String[] constructorArgs;
+    // 需要注入的属性名及其注入的beanId，[i][0]为属性名，[i][1]为beanId，与constructorArgs一起构成依赖图中的边
+    private final String[][] injections;
+
+    public boolean isSingleton() {
+        return SCOPE_SINGLETON.equals(scope);
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.lee.framework.context;
+
+import com.lee.framework.annotation.MyAutowired;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * bean的注入器，每个bean类只创建一次并缓存
+ * 构造器和需要注入的属性(含private属性和父类的属性)在创建时就解析为MethodHandle，
+ * 之后每次创建bean只需invokeExact，不再有反射查找和Field.set的访问检查，
+ * 对每次请求都要创建的prototype/request作用域的bean尤其重要
+ */
+final class BeanInjector {
+
+    // key：bean的类  value：注入器
+    private static final Map<Class<?>, BeanInjector> CACHE = new ConcurrentHashMap<>();
+
+    // 构造器，已适配为(Object[])Object
+    private final MethodHandle constructor;
+    // 构造器的参数个数
+    private final int parameterCount;
+    // 与BeanDefinition.injections按下标一一对应的setter，已适配为(Object, Object)void
+    private final MethodHandle[] setters;
+
+    private BeanInjector(BeanDefinition beanDefinition) throws ReflectiveOperationException {
+        Class<?> clazz = beanDefinition.getBeanClass();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        Constructor<?> ctor = findConstructor(clazz);
+        ctor.setAccessible(true);
+        this.parameterCount = ctor.getParameterCount();
+        if (parameterCount != beanDefinition.getConstructorArgs().length) {
+            throw new IllegalStateException("constructor of " + clazz.getName() + " has " + parameterCount
+                    + " parameters but " + beanDefinition.getConstructorArgs().length + " beans are given");
+        }
+        this.constructor = lookup.unreflectConstructor(ctor)
+                .asSpreader(Object[].class, parameterCount)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+
+        String[][] injections = beanDefinition.getInjections();
+        this.setters = new MethodHandle[injections.length];
+        for (int i = 0; i < injections.length; i++) {
+            Field field = findField(clazz, injections[i][0]);
+            // 开放私有变量的访问权限
+            field.setAccessible(true);
+            setters[i] = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+    }
+
+    /**
+     * 获取此bean类的注入器，第一次获取时创建
+     */
+    static BeanInjector of(BeanDefinition beanDefinition) {
+        return CACHE.computeIfAbsent(beanDefinition.getBeanClass(), clazz -> {
+            try {
+                return new BeanInjector(beanDefinition);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("cannot create injector for " + clazz.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * 调用构造器创建bean
+     *
+     * @param args 按顺序注入的构造器参数
+     */
+    Object newInstance(Object[] args) {
+        try {
+            return (Object) constructor.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * 注入第index个属性
+     */
+    void inject(Object bean, int index, Object value) {
+        try {
+            setters[index].invokeExact(bean, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * 选择创建bean的构造器：
+     * 1、标注了@MyAutowired的构造器
+     * 2、只有一个构造器时使用它
+     * 3、否则使用无参构造器
+     */
+    static Constructor<?> findConstructor(Class<?> clazz) throws NoSuchMethodException {
+        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+        Constructor<?> autowired = null;
+        for (Constructor<?> constructor : constructors) {
+            if (constructor.isAnnotationPresent(MyAutowired.class)) {
+                if (autowired != null) {
+                    throw new IllegalStateException("more than one @MyAutowired constructor in " + clazz.getName());
+                }
+                autowired = constructor;
+            }
+        }
+        if (autowired != null) {
+            return autowired;
+        }
+        if (constructors.length == 1) {
+            return constructors[0];
+        }
+        return clazz.getDeclaredConstructor();
+    }
+
+    /**
+     * 构造器的每个参数注入的beanId，参数上没有@MyAutowired指定beanName时使用参数类型的类名
+     */
+    static String[] constructorArgs(Class<?> clazz) throws NoSuchMethodException {
+        Parameter[] parameters = findConstructor(clazz).getParameters();
+        String[] beanIds = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            MyAutowired myAutowired = parameters[i].getAnnotation(MyAutowired.class);
+            String beanId = myAutowired == null ? "" : myAutowired.value().trim();
+            beanIds[i] = StringUtils.isBlank(beanId) ? parameters[i].getType().getSimpleName() : beanId;
+        }
+        return beanIds;
+    }
+
+    /**
+     * 此类及其父类中所有标注了@MyAutowired的非静态属性及其注入的beanId，[i][0]为属性名，[i][1]为beanId
+     */
+    static String[][] fieldInjections(Class<?> clazz) {
+        List<String[]> injections = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                // 若此属性没有标@MyAutowired注解,则无需注入
+                MyAutowired myAutowired = field.getAnnotation(MyAutowired.class);
+                if (myAutowired == null || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                // 若没有指定beanName,则默认使用类名
+                String beanId = myAutowired.value().trim();
+                if (StringUtils.isBlank(beanId)) {
+                    beanId = field.getType().getSimpleName();
+                }
+                injections.add(new String[]{field.getName(), beanId});
+            }
+        }
+        return injections.toArray(new String[0][]);
+    }
+
+    //在类及其父类中查找属性
+    private static Field findField(Class<?> clazz, String name) throws NoSuchFieldException {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+                // 继续在父类中查找
+            }
+        }
+        throw new NoSuchFieldException(clazz.getName() + "." + name);
+    }
+}
@@ -0,0 +1,45 @@
+package com.lee.framework.context;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * prototype/request作用域的bean的对象池，保存请求结束后重置过的空闲实例
+ * 池中没有空闲实例时由调用方新建，池满时多余的实例直接丢弃，所以不会阻塞也不会无限增长
+ */
+final class BeanPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(BeanPool.class);
+
+    // 空闲的实例
+    private final BlockingQueue<Object> idle;
+
+    BeanPool(int size) {
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * @return 一个空闲的实例，没有返回null
+     */
+    Object acquire() {
+        return idle.poll();
+    }
+
+    /**
+     * 重置实例并放回池中，重置失败的实例不再复用
+     */
+    void release(Object bean) {
+        if (bean instanceof Poolable) {
+            try {
+                ((Poolable) bean).reset();
+            } catch (RuntimeException e) {
+                logger.warn("cannot reset pooled bean " + bean.getClass().getName() + ", discarded", e);
+                return;
+            }
+        }
+        idle.offer(bean);
+    }
+}
@@ -0,0 +1,114 @@
+package com.lee.framework.context;
+
+import com.lee.framework.processor.ComponentIndexProcessor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 编译期由ComponentIndexProcessor生成的组件索引(META-INF/my-components.properties)
+ * 记录了所有@MyController、@MyService、@MyControllerAdvice和@MyInterceptor类的beanId和需要注入的属性，启动时不必扫描文件系统和加载无关的类
+ */
+public class ComponentIndex {
+
+    // key：全类名  value：组件信息
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * 读取classpath中所有的组件索引(可能来自多个jar)
+     *
+     * @return 没有索引时返回null
+     */
+    public static ComponentIndex load(ClassLoader classLoader) throws IOException {
+        Enumeration<URL> urls = classLoader.getResources(ComponentIndexProcessor.INDEX_LOCATION);
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        ComponentIndex index = new ComponentIndex();
+        while (urls.hasMoreElements()) {
+            Properties properties = new Properties();
+            try (InputStream is = urls.nextElement().openStream()) {
+                properties.load(is);
+            }
+            for (String className : properties.stringPropertyNames()) {
+                index.entries.put(className, new Entry(properties.getProperty(className)));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return 此package(含子package)中的所有组件的全类名
+     */
+    public List<String> getClassNames(String packageName) {
+        List<String> classNames = new ArrayList<>();
+        for (String className : entries.keySet()) {
+            if (className.startsWith(packageName + ".")) {
+                classNames.add(className);
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @return 此类的组件信息，不是组件返回null
+     */
+    public Entry get(String className) {
+        return entries.get(className);
+    }
+
+    /**
+     * 一个组件的索引，格式：类型;beanId1,beanId2;属性名1:beanId1,属性名2:beanId2;标记;构造器参数beanId1,构造器参数beanId2
+     * 标记以","分隔，有lazy、scope=作用域、pool=对象池大小，都是默认值时为空
+     */
+    @Getter
+    public static class Entry {
+        // controller、service、advice或interceptor
+        private final String kind;
+        // 注册到ioc容器中的beanId
+        private final String[] beanIds;
+        // 需要注入的属性名及其注入的beanId，[i][0]为属性名，[i][1]为beanId
+        private final String[][] injections;
+        // 作用域
+        private String scope = BeanDefinition.SCOPE_SINGLETON;
+        // 是否延迟创建
+        private boolean lazy;
+        // 对象池大小
+        private int poolSize;
+        // 构造器每个参数注入的beanId
+        private final String[] constructorArgs;
+
+        Entry(String value) {
+            String[] parts = value.split(";", -1);
+            this.kind = parts[0];
+            this.beanIds = split(parts.length > 1 ? parts[1] : "", ",");
+            String[] injections = split(parts.length > 2 ? parts[2] : "", ",");
+            this.injections = new String[injections.length][];
+            for (int i = 0; i < injections.length; i++) {
+                this.injections[i] = injections[i].split(":", 2);
+            }
+            for (String flag : split(parts.length > 3 ? parts[3] : "", ",")) {
+                if ("lazy".equals(flag)) {
+                    this.lazy = true;
+                } else if (flag.startsWith("scope=")) {
+                    this.scope = flag.substring("scope=".length());
+                } else if (flag.startsWith("pool=")) {
+                    this.poolSize = Integer.parseInt(flag.substring("pool=".length()));
+                }
+            }
+            this.constructorArgs = split(parts.length > 4 ? parts[4] : "", ",");
+        }
+
+        private static String[] split(String str, String separator) {
+            return str.isEmpty() ? new String[0] : str.split(separator);
+        }
+    }
+}
@@ -1,37 +1,74 @@
 package com.lee.framework.context;
 
-import com.lee.framework.annotation.MyAutowired;
 import com.lee.framework.annotation.MyController;
+import com.lee.framework.annotation.MyControllerAdvice;
+import com.lee.framework.annotation.MyInterceptor;
 import com.lee.framework.annotation.MyService;
+import com.lee.framework.processor.ComponentIndexProcessor;
 import lombok.Getter;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.net.JarURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * 自己的ioc容器
  */
 public class MyApplicationContext {
 
+    private static final Logger logger = LoggerFactory.getLogger(MyApplicationContext.class);
+
     //ioc容器,spring是用工厂模式实现的，应该使用getBean()获取ioc中的bean对象,此处简化为map.get(beanId)
     private Map<String, Object> instanceMapping = new ConcurrentHashMap<>();
 
+    // key：beanId  value：bean的定义，一个BeanDefinition的所有beanId指向同一个对象
+    private Map<String, BeanDefinition> beanDefinitions = new HashMap<>();
+
+    //已实例化但还未注入完成的bean,用于属性注入的循环依赖,只在持有this锁时访问
+    private Map<BeanDefinition, Object> earlySingletons = new HashMap<>();
+    // prototype/request作用域的bean的对象池,只有配置了poolSize的才有
+    private Map<BeanDefinition, BeanPool> pools = new HashMap<>();
+
+    //是否有prototype/request作用域的bean
+    private boolean scopedBeans;
+
+    //正在创建的bean,按创建顺序排列,用于发现循环依赖,只在持有this锁时访问
+    private LinkedHashSet<BeanDefinition> inCreation = new LinkedHashSet<>();
+
     //配置文件中 需要被扫描注解的包名
     private static final String SCAN_PACKAGE = "scanPackage";
 
     //缓存扫描出来的所有符合条件的类名
     private List<String> classCache = new ArrayList<>();
 
+    //编译期生成的组件索引,没有索引时为null,需要扫描package
+    private ComponentIndex componentIndex;
+
     //存放application.properties中的配置
     @Getter
     private Properties config = new Properties();
@@ -45,72 +82,52 @@ public class MyApplicationContext {
             config.load(is);
 
             //3、注册,从配置读取扫描的包 并 把其中所有需要扫描的类的类名保存到classCache中（可理解为登记bean的信息）
+            //  优先使用编译期生成的组件索引;没有索引,或索引中没有此package的组件时(如索引来自依赖的jar,
+            //  应用模块编译时没有运行注解处理器)扫描package
             String packageName = config.getProperty(SCAN_PACKAGE);
-            doRegister(packageName);
-
-            //4、初始化ioc容器,只要循环实例化需要注入的类的对象 并put到ioc容器中
-            doCreateBean();
+            componentIndex = ComponentIndex.load(this.getClass().getClassLoader());
+            List<String> indexed = componentIndex == null ? Collections.emptyList() : componentIndex.getClassNames(packageName);
+            if (!indexed.isEmpty()) {
+                classCache.addAll(indexed);
+                logger.info("components of " + packageName + " loaded from " + ComponentIndexProcessor.INDEX_LOCATION
+                        + " : " + indexed.size());
+            } else {
+                doRegister(packageName);
+                logger.info("components of " + packageName + " scanned from classpath"
+                        + (componentIndex == null ? "" : ", " + ComponentIndexProcessor.INDEX_LOCATION + " has none of them")
+                        + " : " + classCache.size() + " classes");
+            }
 
-            //5、依赖注入,为初始化ioc容器时实例化的bean注入属性值
-            populate();
+            //4、为每个组件生成BeanDefinition,其注入关系构成依赖图
+            doRegisterBeanDefinitions();
 
+            //5、初始化ioc容器并依赖注入,按依赖图分层,同一层的非延迟bean互不依赖,在ForkJoinPool中并行创建
+            doCreateBean();
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (IOException | ExecutionException e) {
+            //配置错误(循环依赖、作用域不匹配等)和bean创建失败都使启动失败,不能带着缺少bean的容器继续运行
+            throw new IllegalStateException("cannot initialize MyApplicationContext from " + contextConfigLocation, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while initializing MyApplicationContext", e);
         }
 
     }
 
-    /**
-     * 依赖注入
-     * 为初始化ioc容器时实例化的bean注入（标注了@MyAutowired的Controller或Service...）的属性的值
-     */
-    private void populate() {
-        // 若ioc容器中没有bean
-        if (instanceMapping.isEmpty()) {
-            return;
-        }
-        // 遍历ioc容器, key是beanId, value是bean对象
-        instanceMapping.forEach((key, value) -> {
-            // 反射bean对象的所有属性
-            Field[] fields = value.getClass().getFields();
-            // 遍历所有属性
-            for (Field field : fields) {
-                // 若此属性没有标@MyAutowired注解,则无需注入
-                if (!field.isAnnotationPresent(MyAutowired.class)) {
-                    return;
-                }
-                // 获取该属性的注解
-                MyAutowired myAutowired = field.getAnnotation(MyAutowired.class);
-                // 获取指定的beanName
-                String beanId = myAutowired.value().trim();
-                // 若没有指定beanName,则默认使用类名
-                if (StringUtils.isBlank(beanId)) {
-                    beanId = field.getType().getSimpleName();
-                }
-                // 开放私有变量的访问权限
-                field.setAccessible(true);
-                // 为ioc容器中的此bean对象注入此属性
-                try {
-                    field.set(value, instanceMapping.get(beanId));
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
-    }
-
     /**
      * 把此package中所有需要扫描的类的类名保存到classCache中(可理解为登记配置文件中<bean>的信息)
-     * spring使用BeanDefinition保存类名、注册bean的类型（Map/List/Set/ref/parent）
-     * 此处简化为List<String> classCache,只记录类名
+     * 之后由doRegisterBeanDefinitions为其中的组件生成BeanDefinition
      *
      * @param packageName 以"."分隔的包名
      */
-    private void doRegister(String packageName) {
-        // 此package所在的url = "classpath:" + "/"+ 把包名中的 "." -> "/" 后的文件夹路径
-        URL url = this.getClass().getClassLoader().getResource("/" +
-                packageName.replace(".", "/"));
+    private void doRegister(String packageName) throws IOException {
+        // 此package所在的url = "classpath:" + 把包名中的 "." -> "/" 后的文件夹路径
+        URL url = this.getClass().getClassLoader().getResource(packageName.replace(".", "/"));
+        // package在jar包中
+        if ("jar".equals(url.getProtocol())) {
+            doRegisterJar(url, packageName);
+            return;
+        }
 
         String fileName = url.getFile();  //获取此url对应的文件名
         File dir = new File(fileName);
@@ -127,62 +144,415 @@ public class MyApplicationContext {
     }
 
     /**
-     * 初始化ioc容器,只要循环创建需要注入的类的对象 并put到ioc容器中
+     * 把jar包中此package下的所有类的类名保存到classCache中
      */
-    public void doCreateBean() {
-        //若没有扫描到需要注册bean的class,直接返回
-        if (CollectionUtils.isEmpty(classCache)) {
-            return;
+    private void doRegisterJar(URL url, String packageName) throws IOException {
+        String path = packageName.replace(".", "/") + "/";
+        JarURLConnection connection = (JarURLConnection) url.openConnection();
+        //不使用缓存的JarFile,关闭时不影响类加载器
+        connection.setUseCaches(false);
+        try (JarFile jarFile = connection.getJarFile()) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(path) && name.endsWith(".class")) {
+                    // 全类名加入缓存
+                    classCache.add(name.substring(0, name.length() - ".class".length()).replace("/", "."));
+                }
+            }
         }
+    }
 
+    /**
+     * 为classCache中加了注解（@Service @Controller...)的类生成BeanDefinition
+     * spring使用BeanDefinition保存类名、注册bean的类型（Map/List/Set/ref/parent）,此处只保存beanId、作用域、是否延迟创建、构造器参数和需要注入的属性
+     */
+    private void doRegisterBeanDefinitions() {
         //遍历classCache 对加了不同注解的类进行不同的注册操作
         classCache.forEach(className -> {
 
             try {
                 //反射需要被注册bean的类
                 Class<?> clazz = Class.forName(className);
-                //只要加了注解（@Service @Controller...)都要初始化
+
+                //组件索引中已记录了beanId和需要注入的属性
+                ComponentIndex.Entry entry = componentIndex == null ? null : componentIndex.get(className);
+                if (entry != null) {
+                    registerBeanDefinition(new BeanDefinition(clazz, entry.getBeanIds(), entry.getScope(), entry.isLazy(),
+                            entry.getPoolSize(), entry.getConstructorArgs(), entry.getInjections()));
+                    return;
+                }
 
                 if (clazz.isAnnotationPresent(MyController.class)) {    //若加了@MyController
                     //beanName为默认为首字母小写的simpleClassName
                     String beanId = lowerFirstChar(clazz.getSimpleName());
-                    //put到ioc容器中
-                    instanceMapping.put(beanId, clazz.newInstance());
+                    MyController myController = clazz.getAnnotation(MyController.class);
+                    registerBeanDefinition(new BeanDefinition(clazz, new String[]{beanId}, myController.scope(), false,
+                            myController.poolSize(), BeanInjector.constructorArgs(clazz), BeanInjector.fieldInjections(clazz)));
                 } else if (clazz.isAnnotationPresent(MyService.class)) {  //若加了@MyService
 
                     //若设置了beanName则使用其自定义的beanName
                     MyService myService = clazz.getAnnotation(MyService.class);
-                    String beanId = myService.value();
-                    if (StringUtils.isNoneBlank(beanId)) {
-                        //put到ioc容器中
-                        instanceMapping.put(beanId, clazz.newInstance());
-                        return;
+                    List<String> beanIds = new ArrayList<>();
+                    if (StringUtils.isNoneBlank(myService.value())) {
+                        beanIds.add(myService.value().trim());
+                    } else {
+                        //否则使用默认规则：
+                        //1、类名首字母小写
+                        beanIds.add(lowerFirstChar(clazz.getSimpleName()));
+                        //2、若此类实现了接口,则用其接口的类名作为id,所有id共享同一个实例(框架的Poolable接口除外)
+                        for (Class<?> i : clazz.getInterfaces()) {
+                            if (i != Poolable.class) {
+                                beanIds.add(i.getSimpleName());
+                            }
+                        }
                     }
-
-                    //否则使用默认规则：
-                    //TODO 1、类名首字母小写
-                    //2、若此类实现了接口,则用其接口的类名作为id
-                    Class<?>[] interfaces = clazz.getInterfaces();
-                    for (Class<?> i : interfaces) {
-                        //给每一个接口都注册一个bean到ioc容器中
-                        instanceMapping.put(i.getSimpleName(), clazz.newInstance());
+                    registerBeanDefinition(new BeanDefinition(clazz, beanIds.toArray(new String[0]), myService.scope(),
+                            myService.lazy(), myService.poolSize(), BeanInjector.constructorArgs(clazz),
+                            BeanInjector.fieldInjections(clazz)));
+                } else if (clazz.isAnnotationPresent(MyControllerAdvice.class)) {  //若加了@MyControllerAdvice
+                    //若设置了beanName则使用其自定义的beanName,否则为首字母小写的simpleClassName
+                    String beanId = clazz.getAnnotation(MyControllerAdvice.class).value().trim();
+                    if (StringUtils.isBlank(beanId)) {
+                        beanId = lowerFirstChar(clazz.getSimpleName());
                     }
+                    registerBeanDefinition(new BeanDefinition(clazz, new String[]{beanId}, BeanDefinition.SCOPE_SINGLETON,
+                            false, 0, BeanInjector.constructorArgs(clazz), BeanInjector.fieldInjections(clazz)));
+                } else if (clazz.isAnnotationPresent(MyInterceptor.class)) {  //若加了@MyInterceptor
+                    //beanName为首字母小写的simpleClassName,不以HandlerInterceptor接口名作为id,可以有多个拦截器
+                    registerBeanDefinition(new BeanDefinition(clazz, new String[]{lowerFirstChar(clazz.getSimpleName())},
+                            BeanDefinition.SCOPE_SINGLETON, false, 0, BeanInjector.constructorArgs(clazz),
+                            BeanInjector.fieldInjections(clazz)));
                 }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+            } catch (ClassNotFoundException e) {
+                //不是类的文件,不注册;作用域、构造器等配置错误直接抛出,使启动失败
+                logger.warn("cannot register bean " + className + " : " + e);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("no injectable constructor in " + className
+                        + " : annotate one with @MyAutowired or add a no-arg constructor", e);
             }
         });
+    }
+
+    private void registerBeanDefinition(BeanDefinition beanDefinition) {
+        String scope = beanDefinition.getScope();
+        if (!BeanDefinition.SCOPE_SINGLETON.equals(scope) && !BeanDefinition.SCOPE_PROTOTYPE.equals(scope)
+                && !BeanDefinition.SCOPE_REQUEST.equals(scope)) {
+            throw new IllegalStateException("Unknown scope '" + scope + "' of " + beanDefinition.getBeanClass().getName());
+        }
+        for (String beanId : beanDefinition.getBeanIds()) {
+            beanDefinitions.put(beanId, beanDefinition);
+        }
+        //prototype/request作用域的bean可以池化复用
+        if (!beanDefinition.isSingleton()) {
+            scopedBeans = true;
+            if (beanDefinition.getPoolSize() > 0) {
+                pools.put(beanDefinition, new BeanPool(beanDefinition.getPoolSize()));
+            }
+        }
+    }
+
+    /**
+     * 初始化ioc容器,按依赖图把非延迟的bean分层,依赖的bean总是在更前面的层中创建并注入完成
+     * 同一层的bean互不依赖,在ForkJoinPool中并行创建,启动耗时取决于依赖链的长度而不是bean的数量
+     */
+    public void doCreateBean() throws InterruptedException, ExecutionException {
+        //若没有需要创建的bean,直接返回
+        if (beanDefinitions.isEmpty()) {
+            return;
+        }
+        //无法创建的循环依赖和作用域不匹配的依赖,启动时就报错
+        checkCycles();
+        checkScopes();
+
+        // key：非延迟的singleton  value：它(经过延迟bean间接)依赖的非延迟singleton
+        Map<BeanDefinition, Set<BeanDefinition>> dependencies = new LinkedHashMap<>();
+        for (BeanDefinition beanDefinition : new LinkedHashSet<>(beanDefinitions.values())) {
+            if (isEager(beanDefinition)) {
+                Set<BeanDefinition> eagerDependencies = new LinkedHashSet<>();
+                collectDependencies(beanDefinition, eagerDependencies, new HashSet<>());
+                eagerDependencies.remove(beanDefinition);
+                dependencies.put(beanDefinition, eagerDependencies);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            //拓扑排序,每次取出所有依赖都已创建的bean作为一层
+            Set<BeanDefinition> created = new HashSet<>();
+            while (!dependencies.isEmpty()) {
+                List<BeanDefinition> level = new ArrayList<>();
+                for (Map.Entry<BeanDefinition, Set<BeanDefinition>> entry : dependencies.entrySet()) {
+                    if (created.containsAll(entry.getValue())) {
+                        level.add(entry.getKey());
+                    }
+                }
+                if (level.isEmpty()) {
+                    //剩下的bean存在属性注入的循环依赖：逐个创建,注入时使用还未注入完成的实例
+                    //无参构造的bean先创建,使构造器依赖它们的bean可以拿到提前暴露的实例
+                    List<BeanDefinition> cycle = new ArrayList<>(dependencies.keySet());
+                    cycle.sort(Comparator.comparingInt(bd -> bd.getConstructorArgs().length));
+                    for (BeanDefinition beanDefinition : cycle) {
+                        createSingleton(beanDefinition);
+                    }
+                    break;
+                }
+                try {
+                    pool.submit(() -> level.parallelStream().forEach(this::createBean)).get();
+                } catch (ExecutionException e) {
+                    //抛出并行创建时失败的bean的异常
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw e;
+                }
+                created.addAll(level);
+                level.forEach(dependencies::remove);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //启动时创建的bean：非延迟的singleton
+    private static boolean isEager(BeanDefinition beanDefinition) {
+        return beanDefinition.isSingleton() && !beanDefinition.isLazy();
+    }
+
+    //收集bean依赖的非延迟singleton,延迟bean和prototype/request作用域的bean本身不在依赖图中,但它们的依赖要算在依赖它的bean上
+    private void collectDependencies(BeanDefinition beanDefinition, Set<BeanDefinition> result, Set<BeanDefinition> visited) {
+        if (!visited.add(beanDefinition)) {
+            return;
+        }
+        List<String> beanIds = new ArrayList<>(Arrays.asList(beanDefinition.getConstructorArgs()));
+        for (String[] injection : beanDefinition.getInjections()) {
+            beanIds.add(injection[1]);
+        }
+        for (String beanId : beanIds) {
+            BeanDefinition dependency = beanDefinitions.get(beanId);
+            if (dependency == null) {
+                continue;
+            }
+            if (!isEager(dependency)) {
+                collectDependencies(dependency, result, visited);
+            } else {
+                result.add(dependency);
+            }
+        }
+    }
+
+    /**
+     * 检查无法创建的循环依赖：
+     * 1、构造器参数之间的循环依赖,如A的构造器需要B,B的构造器又需要A
+     * 2、注入prototype/request作用域的bean形成的循环依赖,每次注入都要创建新的实例,永远不会结束
+     * singleton之间属性注入的循环依赖可以通过提前暴露实例解决
+     */
+    private void checkCycles() {
+        Set<BeanDefinition> checked = new HashSet<>();
+        for (BeanDefinition beanDefinition : new LinkedHashSet<>(beanDefinitions.values())) {
+            checkCycles(beanDefinition, new LinkedHashSet<>(), checked);
+        }
+    }
+
+    private void checkCycles(BeanDefinition beanDefinition, LinkedHashSet<BeanDefinition> path, Set<BeanDefinition> checked) {
+        if (checked.contains(beanDefinition)) {
+            return;
+        }
+        if (!path.add(beanDefinition)) {
+            throw new IllegalStateException("Circular dependency: " + describe(path, beanDefinition));
+        }
+        for (String beanId : beanDefinition.getConstructorArgs()) {
+            BeanDefinition dependency = beanDefinitions.get(beanId);
+            if (dependency != null) {
+                checkCycles(dependency, path, checked);
+            }
+        }
+        for (String[] injection : beanDefinition.getInjections()) {
+            BeanDefinition dependency = beanDefinitions.get(injection[1]);
+            if (dependency != null && !dependency.isSingleton()) {
+                checkCycles(dependency, path, checked);
+            }
+        }
+        path.remove(beanDefinition);
+        checked.add(beanDefinition);
+    }
+
+    /**
+     * 检查作用域：singleton和池化的bean比一次请求活得更久,不能注入request作用域的bean
+     */
+    private void checkScopes() {
+        for (BeanDefinition beanDefinition : new LinkedHashSet<>(beanDefinitions.values())) {
+            if (!beanDefinition.isSingleton() && beanDefinition.getPoolSize() == 0) {
+                continue;
+            }
+            List<String> beanIds = new ArrayList<>(Arrays.asList(beanDefinition.getConstructorArgs()));
+            for (String[] injection : beanDefinition.getInjections()) {
+                beanIds.add(injection[1]);
+            }
+            for (String beanId : beanIds) {
+                BeanDefinition dependency = beanDefinitions.get(beanId);
+                if (dependency != null && BeanDefinition.SCOPE_REQUEST.equals(dependency.getScope())) {
+                    throw new IllegalStateException("Bean " + beanDefinition.getBeanIds()[0]
+                            + " outlives a request and cannot depend on request scoped bean " + beanId);
+                }
+            }
+        }
+    }
+
+    //循环依赖的路径,如"a -> b -> a"
+    private static String describe(Set<BeanDefinition> path, BeanDefinition repeated) {
+        StringBuilder sb = new StringBuilder();
+        boolean inCycle = false;
+        for (BeanDefinition beanDefinition : path) {
+            inCycle |= beanDefinition == repeated;
+            if (inCycle) {
+                sb.append(beanDefinition.getBeanIds()[0]).append(" -> ");
+            }
+        }
+        return sb.append(repeated.getBeanIds()[0]).toString();
+    }
+
+    //创建bean并注入属性,完成后才放入ioc容器
+    private void createBean(BeanDefinition beanDefinition) {
+        try {
+            Object bean = instantiate(beanDefinition);
+            populate(beanDefinition, bean);
+            registerSingleton(beanDefinition, bean);
+        } catch (RuntimeException e) {
+            //非延迟的bean创建失败使启动失败,否则依赖它的bean会被注入null
+            throw new IllegalStateException("Error creating bean " + beanDefinition.getBeanIds()[0], e);
+        }
+    }
+
+    //调用构造器创建bean,构造器参数在此时获取(依赖的延迟bean在此时创建)
+    private Object instantiate(BeanDefinition beanDefinition) {
+        String[] constructorArgs = beanDefinition.getConstructorArgs();
+        Object[] args = new Object[constructorArgs.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = getBean(constructorArgs[i]);
+        }
+        return BeanInjector.of(beanDefinition).newInstance(args);
+    }
 
+    //以所有beanId把同一个实例放入ioc容器
+    private void registerSingleton(BeanDefinition beanDefinition, Object bean) {
+        for (String beanId : beanDefinition.getBeanIds()) {
+            instanceMapping.put(beanId, bean);
+        }
+    }
 
+    /**
+     * 依赖注入
+     * 为bean注入（标注了@MyAutowired的Controller或Service...）的属性的值,依赖的延迟bean在此时创建
+     */
+    private void populate(BeanDefinition beanDefinition, Object bean) {
+        BeanInjector injector = BeanInjector.of(beanDefinition);
+        String[][] injections = beanDefinition.getInjections();
+        for (int i = 0; i < injections.length; i++) {
+            // 为ioc容器中的此bean对象注入此属性
+            injector.inject(bean, i, getBean(injections[i][1]));
+        }
     }
 
+    /**
+     * 获取bean,延迟创建的bean在第一次获取时才创建
+     *
+     * @return 没有此bean返回null
+     */
     public Object getBean(String beanName) {
-        return null;
+        Object bean = instanceMapping.get(beanName);
+        if (bean != null) {
+            return bean;
+        }
+        BeanDefinition beanDefinition = beanDefinitions.get(beanName);
+        if (beanDefinition == null) {
+            return null;
+        }
+        switch (beanDefinition.getScope()) {
+            case BeanDefinition.SCOPE_PROTOTYPE:
+                return createScoped(beanDefinition);
+            case BeanDefinition.SCOPE_REQUEST:
+                return getRequestBean(beanDefinition);
+            default:
+                return createSingleton(beanDefinition);
+        }
+    }
+
+    //获取当前请求的request作用域的bean,同一个请求中只创建一次
+    private Object getRequestBean(BeanDefinition beanDefinition) {
+        RequestContext requestContext = RequestContext.current();
+        if (requestContext == null) {
+            throw new IllegalStateException("No request bound to current thread for request scoped bean "
+                    + beanDefinition.getBeanIds()[0]);
+        }
+        Object bean = requestContext.get(beanDefinition);
+        if (bean == null) {
+            bean = createScoped(beanDefinition);
+            requestContext.put(beanDefinition, bean);
+        }
+        return bean;
+    }
+
+    //创建prototype/request作用域的bean,池化的bean优先从对象池中取,请求结束时放回对象池
+    private Object createScoped(BeanDefinition beanDefinition) {
+        BeanPool pool = pools.get(beanDefinition);
+        Object bean = pool == null ? null : pool.acquire();
+        if (bean == null) {
+            bean = instantiate(beanDefinition);
+            populate(beanDefinition, bean);
+        }
+        RequestContext requestContext = pool == null ? null : RequestContext.current();
+        if (requestContext != null) {
+            Object pooled = bean;
+            requestContext.onClose(() -> pool.release(pooled));
+        }
+        return bean;
+    }
+
+    //创建延迟bean或循环依赖中的bean,加锁保证只创建一个实例
+    private synchronized Object createSingleton(BeanDefinition beanDefinition) {
+        Object bean = instanceMapping.get(beanDefinition.getBeanIds()[0]);
+        if (bean != null) {
+            return bean;
+        }
+        //属性注入的循环依赖,返回还未注入完成的实例
+        bean = earlySingletons.get(beanDefinition);
+        if (bean != null) {
+            return bean;
+        }
+        //还在调用构造器时又依赖了自己
+        if (!inCreation.add(beanDefinition)) {
+            throw new IllegalStateException("Circular dependency: " + describe(inCreation, beanDefinition));
+        }
+        try {
+            bean = instantiate(beanDefinition);
+            earlySingletons.put(beanDefinition, bean);
+            populate(beanDefinition, bean);
+            registerSingleton(beanDefinition, bean);
+            return bean;
+        } finally {
+            earlySingletons.remove(beanDefinition);
+            inCreation.remove(beanDefinition);
+        }
+    }
+
+    /**
+     * @return 所有bean的定义,每个定义只出现一次
+     */
+    public Collection<BeanDefinition> getBeanDefinitions() {
+        return new LinkedHashSet<>(beanDefinitions.values());
+    }
+
+    /**
+     * @return 是否有prototype/request作用域的bean,没有时请求不需要RequestContext
+     */
+    public boolean hasScopedBeans() {
+        return scopedBeans;
     }
 
     /**
-     * 获取ioc容器
+     * 获取ioc容器,只有singleton,延迟bean在创建后才会出现在其中
      */
     public Map<String, Object> getAll() {
         return instanceMapping;
@@ -0,0 +1,14 @@
+package com.lee.framework.context;
+
+/**
+ * 可池化的bean，配置了poolSize的prototype/request作用域的bean实现此接口，
+ * 在请求结束放回对象池之前重置自身的状态(如清空集合、归零计数)，下次取出时如同新建
+ */
+public interface Poolable {
+
+    /**
+     * 重置bean的状态，在放回对象池之前调用
+     */
+    void reset();
+
+}
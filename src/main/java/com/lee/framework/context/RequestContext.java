@@ -0,0 +1,78 @@
+package com.lee.framework.context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次请求的上下文，保存request作用域的bean，请求结束时把从对象池取出的bean放回池中
+ * 由MyDispatcherServlet为每个请求创建，在调用handler的线程上绑定(handler可能在handlerExecutor的线程中执行)
+ * 同一时刻只会被一个线程使用，所以不需要同步
+ */
+public class RequestContext {
+
+    // 当前线程绑定的请求上下文
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    // key：bean的定义  value：此请求中的request作用域的bean
+    private final Map<BeanDefinition, Object> beans = new HashMap<>();
+    // 请求结束时执行的回调,如把bean放回对象池
+    private List<Runnable> closeCallbacks;
+
+    /**
+     * @return 当前线程绑定的请求上下文，不在请求中返回null
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 把请求上下文绑定到当前线程
+     *
+     * @return 之前绑定的请求上下文，用于restore
+     */
+    public static RequestContext bind(RequestContext requestContext) {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(requestContext);
+        return previous;
+    }
+
+    /**
+     * 恢复之前绑定的请求上下文，没有则解除绑定
+     */
+    public static void restore(RequestContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    Object get(BeanDefinition beanDefinition) {
+        return beans.get(beanDefinition);
+    }
+
+    void put(BeanDefinition beanDefinition, Object bean) {
+        beans.put(beanDefinition, bean);
+    }
+
+    void onClose(Runnable callback) {
+        if (closeCallbacks == null) {
+            closeCallbacks = new ArrayList<>();
+        }
+        closeCallbacks.add(callback);
+    }
+
+    /**
+     * 请求结束，丢弃request作用域的bean，池化的bean重置后放回对象池
+     */
+    public void close() {
+        beans.clear();
+        if (closeCallbacks != null) {
+            List<Runnable> callbacks = closeCallbacks;
+            closeCallbacks = null;
+            callbacks.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 普通JavaBean的反序列化器：使用public的无参构造方法创建对象，按属性名调用public的setter(setXxx)或给public字段赋值
+ * 构造方法和属性在创建时一次性解析为MethodHandle，反序列化时不再使用反射；JSON中未知的属性直接跳过
+ * 属性放在按属性名哈希值开放寻址的表中，直接用JsonReader缓冲区中的属性名查找，不为属性名创建字符串
+ */
+class BeanDeserializer implements JsonDeserializer<Object> {
+
+    private final Class<?> clazz;
+    //统一适配为()Object
+    private final MethodHandle constructor;
+    //开放寻址的属性表,长度为2的幂,至少有一个空位
+    private final Property[] table;
+
+    BeanDeserializer(Class<?> clazz) {
+        this.clazz = clazz;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        // key：属性名  value：属性
+        Map<String, Property> properties = new HashMap<>();
+        try {
+            if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+                throw new IllegalArgumentException("cannot deserialize abstract type " + clazz.getName());
+            }
+            this.constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            for (Field field : clazz.getFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    properties.put(field.getName(), new Property(field.getName(), lookup.unreflectSetter(field), field.getGenericType()));
+                }
+            }
+            //setter优先于同名的public字段
+            for (Method method : clazz.getMethods()) {
+                String name = propertyName(method);
+                if (name != null) {
+                    properties.put(name, new Property(name, lookup.unreflect(method), method.getGenericParameterTypes()[0]));
+                }
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("cannot deserialize " + clazz.getName() + " : no public no-arg constructor", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot deserialize " + clazz.getName(), e);
+        }
+        table = new Property[Integer.highestOneBit(Math.max(properties.size(), 1) * 2) * 2];
+        for (Property property : properties.values()) {
+            int i = property.hash & (table.length - 1);
+            while (table[i] != null) {
+                i = (i + 1) & (table.length - 1);
+            }
+            table[i] = property;
+        }
+    }
+
+    @Override
+    public Object read(JsonReader in) throws IOException {
+        if (in.peek() == JsonReader.Token.NULL) {
+            in.nextNull();
+            return null;
+        }
+        in.beginObject();
+        Object bean;
+        try {
+            bean = (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("cannot instantiate " + clazz.getName(), t);
+        }
+        while (in.hasNext()) {
+            Property property = find(in);
+            if (property == null) {
+                in.skipValue();
+                continue;
+            }
+            Object value = property.deserializer().read(in);
+            try {
+                property.setter.invokeExact(bean, value);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        in.endObject();
+        return bean;
+    }
+
+    //按JsonReader刚读取的属性名查找属性,没有返回null
+    private Property find(JsonReader in) throws IOException {
+        int hash = in.nextNameHash();
+        int mask = table.length - 1;
+        for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+            if (table[i].hash == hash && in.nameEquals(table[i].name)) {
+                return table[i];
+            }
+        }
+        return null;
+    }
+
+    //由setter方法名得到属性名，不是setter返回null
+    private static String propertyName(Method method) {
+        String name = method.getName();
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1
+                || !name.startsWith("set") || name.length() == 3) {
+            return null;
+        }
+        //与java.beans.Introspector一致，"URL"保持不变
+        if (name.length() > 4 && Character.isUpperCase(name.charAt(4)) && Character.isUpperCase(name.charAt(3))) {
+            return name.substring(3);
+        }
+        return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+    }
+
+    private static class Property {
+        private final String name;
+        private final int hash;
+        //统一适配为(Object,Object)void
+        private final MethodHandle setter;
+        private final Type type;
+        //属性类型的反序列化器,第一次读取时才解析,避免自引用的类在创建时无限递归
+        private JsonDeserializer<Object> deserializer;
+
+        private Property(String name, MethodHandle setter, Type type) {
+            this.name = name;
+            this.hash = name.hashCode();
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.type = type;
+        }
+
+        private JsonDeserializer<Object> deserializer() {
+            if (deserializer == null) {
+                deserializer = Json.deserializerFor(type);
+            }
+            return deserializer;
+        }
+    }
+}
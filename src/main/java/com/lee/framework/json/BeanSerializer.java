@@ -0,0 +1,166 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 普通JavaBean的序列化器：输出所有public的getter(getXxx/isXxx)和public字段
+ * 属性在创建时一次性解析为MethodHandle，属性名预先编码，序列化时不再使用反射
+ * 非public的类(如Map.entry()返回的KeyValueHolder、private的内部类DTO)：getter优先按public的父类或接口中的声明(如Map.Entry.getKey)解析，
+ * 没有public的声明时与BeanInjector一样setAccessible后解析
+ */
+class BeanSerializer implements JsonSerializer<Object> {
+
+    //按属性名排序的属性
+    private final Property[] properties;
+
+    BeanSerializer(Class<?> clazz) {
+        Map<String, MethodHandle> getters = new TreeMap<>();
+        try {
+            for (Field field : clazz.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    getters.put(field.getName(), getter(field));
+                }
+            }
+            for (Method method : clazz.getMethods()) {
+                String name = propertyName(method);
+                if (name != null) {
+                    getters.put(name, getter(method));
+                }
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            //不能setAccessible,如未开放的模块中的类
+            throw new IllegalStateException("cannot serialize " + clazz.getName(), e);
+        }
+        this.properties = new Property[getters.size()];
+        int i = 0;
+        for (Map.Entry<String, MethodHandle> entry : getters.entrySet()) {
+            //统一适配为(Object)Object
+            MethodHandle getter = entry.getValue().asType(MethodType.methodType(Object.class, Object.class));
+            properties[i++] = new Property(entry.getKey(), getter);
+        }
+    }
+
+    @Override
+    public void write(Object value, JsonWriter out) throws IOException {
+        out.beginObject();
+        for (Property property : properties) {
+            Object propertyValue;
+            try {
+                propertyValue = (Object) property.getter.invokeExact(value);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            out.name(property.name);
+            Json.writeValue(propertyValue, out);
+        }
+        out.endObject();
+    }
+
+    //public类中声明的字段用publicLookup,否则开放访问权限
+    private static MethodHandle getter(Field field) throws IllegalAccessException {
+        if (Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+            try {
+                return MethodHandles.publicLookup().unreflectGetter(field);
+            } catch (IllegalAccessException e) {
+                //如public的内部类所在的外部类不是public
+            }
+        }
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    //按public的类或接口中的声明解析getter,没有时开放访问权限
+    private static MethodHandle getter(Method method) throws IllegalAccessException {
+        Method declared = publicDeclaration(method.getDeclaringClass(), method);
+        if (declared != null) {
+            try {
+                return MethodHandles.publicLookup().unreflect(declared);
+            } catch (IllegalAccessException e) {
+                //如public的内部类所在的外部类不是public
+            }
+        }
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+    }
+
+    //在type及其父类、接口中查找声明了此方法的public类型,没有返回null
+    private static Method publicDeclaration(Class<?> type, Method method) {
+        if (type == null) {
+            return null;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                Method declared = type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+                if (Modifier.isPublic(declared.getModifiers())) {
+                    return declared;
+                }
+            } catch (NoSuchMethodException e) {
+                //由父类或接口声明
+            }
+        }
+        Method declared = publicDeclaration(type.getSuperclass(), method);
+        for (Class<?> iface : type.getInterfaces()) {
+            if (declared != null) {
+                break;
+            }
+            declared = publicDeclaration(iface, method);
+        }
+        return declared;
+    }
+
+    //由getter方法名得到属性名，不是getter返回null
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    private static String decapitalize(String name) {
+        //与java.beans.Introspector一致，"URL"保持不变
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static class Property {
+        //预先编码的 "属性名":
+        private final byte[] name;
+        private final MethodHandle getter;
+
+        private Property(String name, MethodHandle getter) {
+            this.name = encodeName(name);
+            this.getter = getter;
+        }
+
+        private static byte[] encodeName(String name) {
+            StringBuilder sb = new StringBuilder(name.length() + 3).append('"');
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '"' || c == '\\') sb.append('\\');
+                sb.append(c);
+            }
+            return sb.append("\":").toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * JSON序列化/反序列化入口
+ * 每个类的序列化器只在第一次序列化此类时创建并缓存，之后直接使用；
+ * 每个线程复用同一个JsonWriter及其缓冲区，直接写入输出流
+ * 反序列化同样按类型(含泛型参数，如List&lt;User&gt;)缓存反序列化器，每个线程复用同一个JsonReader，直接从输入流流式读取
+ */
+public final class Json {
+
+    //JsonWriter的缓冲区大小
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // key：类  value：此类的序列化器
+    private static final Map<Class<?>, JsonSerializer<Object>> SERIALIZERS = new ConcurrentHashMap<>();
+
+    // key：类型(Class或ParameterizedType等)  value：此类型的反序列化器
+    private static final Map<Type, JsonDeserializer<Object>> DESERIALIZERS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<JsonWriter> WRITER = ThreadLocal.withInitial(() -> new JsonWriter(BUFFER_SIZE));
+
+    private static final ThreadLocal<JsonReader> READER = ThreadLocal.withInitial(() -> new JsonReader(BUFFER_SIZE));
+
+    private Json() {
+    }
+
+    /**
+     * 把对象序列化为JSON写入输出流
+     */
+    public static void write(Object value, OutputStream out) throws IOException {
+        JsonWriter writer = WRITER.get().reset(out);
+        try {
+            writeValue(value, writer);
+            writer.flush();
+        } finally {
+            writer.reset(null);
+        }
+    }
+
+    /**
+     * 注册(或覆盖)一个类的序列化器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void register(Class<T> clazz, JsonSerializer<? super T> serializer) {
+        SERIALIZERS.put(clazz, (JsonSerializer<Object>) serializer);
+    }
+
+    /**
+     * 把任意值写入JsonWriter，用于序列化器中输出属性值
+     */
+    public static void writeValue(Object value, JsonWriter out) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        serializerFor(value.getClass()).write(value, out);
+    }
+
+    private static JsonSerializer<Object> serializerFor(Class<?> clazz) {
+        JsonSerializer<Object> serializer = SERIALIZERS.get(clazz);
+        if (serializer == null) {
+            serializer = SERIALIZERS.computeIfAbsent(clazz, Json::createSerializer);
+        }
+        return serializer;
+    }
+
+    //按类型创建序列化器
+    @SuppressWarnings("unchecked")
+    private static JsonSerializer<Object> createSerializer(Class<?> clazz) {
+        if (clazz == String.class || clazz == Character.class || clazz.isEnum()
+                || TemporalAccessor.class.isAssignableFrom(clazz)) {
+            return (value, out) -> out.value(value.toString());
+        }
+        if (clazz == Integer.class || clazz == Long.class || clazz == Short.class || clazz == Byte.class) {
+            return (value, out) -> out.value(((Number) value).longValue());
+        }
+        if (clazz == Double.class || clazz == Float.class) {
+            return (value, out) -> out.value(((Number) value).doubleValue());
+        }
+        if (clazz == BigDecimal.class || clazz == BigInteger.class) {
+            return (value, out) -> out.rawNumber(value.toString());
+        }
+        if (clazz == Boolean.class) {
+            return (value, out) -> out.value((Boolean) value);
+        }
+        if (Date.class.isAssignableFrom(clazz)) {
+            //输出毫秒时间戳
+            return (value, out) -> out.value(((Date) value).getTime());
+        }
+        if (clazz == Optional.class) {
+            return (value, out) -> writeValue(((Optional<?>) value).orElse(null), out);
+        }
+        if (Map.class.isAssignableFrom(clazz)) {
+            return (value, out) -> {
+                out.beginObject();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    out.name(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue(), out);
+                }
+                out.endObject();
+            };
+        }
+        if (Collection.class.isAssignableFrom(clazz)) {
+            return (value, out) -> {
+                out.beginArray();
+                for (Object element : (Collection<?>) value) {
+                    writeValue(element, out);
+                }
+                out.endArray();
+            };
+        }
+        if (clazz.isArray() && !clazz.getComponentType().isPrimitive()) {
+            return (value, out) -> {
+                out.beginArray();
+                for (Object element : (Object[]) value) {
+                    writeValue(element, out);
+                }
+                out.endArray();
+            };
+        }
+        if (clazz == int[].class) {
+            return (value, out) -> {
+                out.beginArray();
+                for (int element : (int[]) value) {
+                    out.value(element);
+                }
+                out.endArray();
+            };
+        }
+        if (clazz == long[].class) {
+            return (value, out) -> {
+                out.beginArray();
+                for (long element : (long[]) value) {
+                    out.value(element);
+                }
+                out.endArray();
+            };
+        }
+        //其他基本类型数组
+        if (clazz.isArray()) {
+            return (value, out) -> {
+                out.beginArray();
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    writeValue(Array.get(value, i), out);
+                }
+                out.endArray();
+            };
+        }
+        return new BeanSerializer(clazz);
+    }
+
+    /**
+     * 从输入流读取一个JSON值并转为指定类型
+     *
+     * @param type 目标类型，可以是带泛型参数的类型，如List&lt;User&gt;
+     * @return 输入流为空(只有空白)时返回null
+     * @throws JsonParseException JSON的语法错误，或值不能转为目标类型
+     */
+    public static <T> T read(InputStream in, Type type) throws IOException {
+        return read(in, deserializerFor(type));
+    }
+
+    /**
+     * 使用预先取得的反序列化器从输入流读取一个JSON值，调用方可以缓存反序列化器，不再按类型查找
+     */
+    public static <T> T read(InputStream in, JsonDeserializer<T> deserializer) throws IOException {
+        JsonReader reader = READER.get().reset(in);
+        try {
+            if (reader.peek() == JsonReader.Token.END_DOCUMENT) {
+                return null;
+            }
+            T value = deserializer.read(reader);
+            if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+                throw reader.syntaxError("Unexpected content after document");
+            }
+            return value;
+        } finally {
+            reader.reset(null);
+        }
+    }
+
+    /**
+     * 注册(或覆盖)一个类的反序列化器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void registerDeserializer(Class<T> clazz, JsonDeserializer<? extends T> deserializer) {
+        DESERIALIZERS.put(clazz, (JsonDeserializer<Object>) deserializer);
+    }
+
+    /**
+     * 从JsonReader读取任意类型的值，用于反序列化器中读取属性值
+     */
+    public static Object readValue(JsonReader in, Type type) throws IOException {
+        return deserializerFor(type).read(in);
+    }
+
+    /**
+     * 获取类型的反序列化器，第一次获取时创建并缓存
+     *
+     * @throws IllegalArgumentException 不能反序列化的类型，如接口、没有public无参构造方法的类
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonDeserializer<T> deserializerFor(Type type) {
+        JsonDeserializer<Object> deserializer = DESERIALIZERS.get(type);
+        if (deserializer == null) {
+            //在computeIfAbsent外创建,创建容器类型的反序列化器时不会递归修改map
+            deserializer = createDeserializer(type);
+            JsonDeserializer<Object> existing = DESERIALIZERS.putIfAbsent(type, deserializer);
+            if (existing != null) {
+                deserializer = existing;
+            }
+        }
+        return (JsonDeserializer<T>) deserializer;
+    }
+
+    /**
+     * @return 第一次读取时才获取type的反序列化器的反序列化器，用于属性、元素的类型，避免自引用的类型无限递归
+     */
+    static JsonDeserializer<Object> lazyDeserializer(Type type) {
+        return new JsonDeserializer<Object>() {
+            private JsonDeserializer<Object> deserializer;
+
+            @Override
+            public Object read(JsonReader in) throws IOException {
+                if (deserializer == null) {
+                    deserializer = deserializerFor(type);
+                }
+                return deserializer.read(in);
+            }
+        };
+    }
+
+    //按类型创建反序列化器
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static JsonDeserializer<Object> createDeserializer(Type type) {
+        Class<?> clazz = rawClass(type);
+        if (clazz == Object.class) {
+            return Json::readNatural;
+        }
+        if (clazz == String.class) {
+            return scalar(clazz, JsonReader::nextString);
+        }
+        if (clazz == int.class || clazz == Integer.class) {
+            return scalar(clazz, JsonReader::nextInt);
+        }
+        if (clazz == long.class || clazz == Long.class) {
+            return scalar(clazz, JsonReader::nextLong);
+        }
+        if (clazz == double.class || clazz == Double.class) {
+            return scalar(clazz, JsonReader::nextDouble);
+        }
+        if (clazz == float.class || clazz == Float.class) {
+            return scalar(clazz, in -> (float) in.nextDouble());
+        }
+        if (clazz == short.class || clazz == Short.class) {
+            return scalar(clazz, in -> Short.valueOf(in.nextString()));
+        }
+        if (clazz == byte.class || clazz == Byte.class) {
+            return scalar(clazz, in -> Byte.valueOf(in.nextString()));
+        }
+        if (clazz == boolean.class || clazz == Boolean.class) {
+            return scalar(clazz, JsonReader::nextBoolean);
+        }
+        if (clazz == char.class || clazz == Character.class) {
+            return scalar(clazz, in -> {
+                String s = in.nextString();
+                if (s.length() != 1) {
+                    throw new IllegalArgumentException("expected a single character");
+                }
+                return s.charAt(0);
+            });
+        }
+        if (clazz == BigDecimal.class) {
+            return scalar(clazz, in -> new BigDecimal(in.nextString()));
+        }
+        if (clazz == BigInteger.class) {
+            return scalar(clazz, in -> new BigInteger(in.nextString()));
+        }
+        if (clazz.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) clazz;
+            return scalar(clazz, in -> Enum.valueOf(enumType, in.nextString()));
+        }
+        if (Date.class.isAssignableFrom(clazz)) {
+            //与序列化一致读取毫秒时间戳,也接受ISO格式的字符串
+            return scalar(clazz, in -> in.peek() == JsonReader.Token.NUMBER
+                    ? new Date(in.nextLong()) : Date.from(Instant.parse(in.nextString())));
+        }
+        if (TemporalAccessor.class.isAssignableFrom(clazz)) {
+            //与序列化一致按toString()的格式(ISO)解析,如LocalDate.parse(CharSequence)
+            MethodHandle parse;
+            try {
+                parse = MethodHandles.publicLookup().findStatic(clazz, "parse", MethodType.methodType(clazz, CharSequence.class))
+                        .asType(MethodType.methodType(Object.class, CharSequence.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("cannot deserialize " + clazz.getName(), e);
+            }
+            return scalar(clazz, in -> {
+                try {
+                    return (Object) parse.invokeExact((CharSequence) in.nextString());
+                } catch (IOException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            });
+        }
+        if (clazz == Optional.class) {
+            JsonDeserializer<Object> value = lazyDeserializer(typeArgument(type, 0));
+            return in -> Optional.ofNullable(value.read(in));
+        }
+        if (Map.class.isAssignableFrom(clazz)) {
+            Function<String, Object> key = keyConverter(rawClass(typeArgument(type, 0)));
+            JsonDeserializer<Object> value = lazyDeserializer(typeArgument(type, 1));
+            Supplier<Object> factory = factory(clazz, SortedMap.class.isAssignableFrom(clazz) ? TreeMap.class
+                    : ConcurrentMap.class.isAssignableFrom(clazz) ? ConcurrentHashMap.class : LinkedHashMap.class);
+            return scalar(clazz, in -> {
+                Map<Object, Object> map = (Map<Object, Object>) factory.get();
+                in.beginObject();
+                while (in.hasNext()) {
+                    map.put(key.apply(in.nextName()), value.read(in));
+                }
+                in.endObject();
+                return map;
+            });
+        }
+        if (Collection.class.isAssignableFrom(clazz)) {
+            JsonDeserializer<Object> element = lazyDeserializer(typeArgument(type, 0));
+            Supplier<Object> factory = factory(clazz, SortedSet.class.isAssignableFrom(clazz) ? TreeSet.class
+                    : Set.class.isAssignableFrom(clazz) ? LinkedHashSet.class
+                    : Queue.class.isAssignableFrom(clazz) && !List.class.isAssignableFrom(clazz) ? ArrayDeque.class
+                    : ArrayList.class);
+            return scalar(clazz, in -> {
+                Collection<Object> collection = (Collection<Object>) factory.get();
+                in.beginArray();
+                while (in.hasNext()) {
+                    collection.add(element.read(in));
+                }
+                in.endArray();
+                return collection;
+            });
+        }
+        if (clazz.isArray()) {
+            Type componentType = type instanceof GenericArrayType
+                    ? ((GenericArrayType) type).getGenericComponentType() : clazz.getComponentType();
+            Class<?> componentClass = clazz.getComponentType();
+            JsonDeserializer<Object> element = lazyDeserializer(componentType);
+            return scalar(clazz, in -> {
+                List<Object> elements = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    elements.add(element.read(in));
+                }
+                in.endArray();
+                Object array = Array.newInstance(componentClass, elements.size());
+                for (int i = 0; i < elements.size(); i++) {
+                    Array.set(array, i, elements.get(i));
+                }
+                return array;
+            });
+        }
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            throw new IllegalArgumentException("cannot deserialize abstract type " + type.getTypeName());
+        }
+        return new BeanDeserializer(clazz);
+    }
+
+    /**
+     * 包装读取单个值的反序列化器：JSON的null读取为null(基本类型为默认值)，
+     * 转换失败(如数字格式、枚举常量名错误)转为JsonParseException
+     */
+    private static JsonDeserializer<Object> scalar(Class<?> clazz, JsonDeserializer<?> deserializer) {
+        Object defaultValue = clazz.isPrimitive() ? Array.get(Array.newInstance(clazz, 1), 0) : null;
+        return in -> {
+            if (in.peek() == JsonReader.Token.NULL) {
+                in.nextNull();
+                return defaultValue;
+            }
+            try {
+                return deserializer.read(in);
+            } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+                throw new JsonParseException("Cannot convert value to " + clazz.getName()
+                        + " at byte " + in.getPosition() + " : " + e.getMessage(), e);
+            }
+        };
+    }
+
+    //Map的key按key的类型转换,只支持String、整数和枚举
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<String, Object> keyConverter(Class<?> keyClass) {
+        if (keyClass == String.class || keyClass == Object.class) {
+            return name -> name;
+        }
+        if (keyClass == Integer.class) {
+            return Integer::valueOf;
+        }
+        if (keyClass == Long.class) {
+            return Long::valueOf;
+        }
+        if (keyClass.isEnum()) {
+            return name -> Enum.valueOf((Class<? extends Enum>) keyClass, name);
+        }
+        throw new IllegalArgumentException("unsupported map key type " + keyClass.getName());
+    }
+
+    //容器类型是接口或抽象类时使用默认实现,否则使用其public无参构造方法
+    private static Supplier<Object> factory(Class<?> clazz, Class<?> defaultClass) {
+        Class<?> target = clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()) ? defaultClass : clazz;
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup().findConstructor(target, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot deserialize " + clazz.getName(), e);
+        }
+        return () -> {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        };
+    }
+
+    //目标类型为Object时按JSON的值读取为Map、List、String、Long/BigInteger、Double、Boolean
+    private static Object readNatural(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    map.put(in.nextName(), readNatural(in));
+                }
+                in.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(readNatural(in));
+                }
+                in.endArray();
+                return list;
+            case NUMBER:
+                String number = in.nextString();
+                if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+                    return Double.valueOf(number);
+                }
+                return number.length() < 19 ? (Object) Long.valueOf(number) : new BigInteger(number);
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                return in.nextString();
+        }
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        if (type instanceof WildcardType) {
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        }
+        if (type instanceof TypeVariable) {
+            return rawClass(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    //泛型参数,没有泛型时为Object
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+}
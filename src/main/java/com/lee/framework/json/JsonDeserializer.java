@@ -0,0 +1,18 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+
+/**
+ * 从JSON读取一种类型的对象，每个类型只在第一次反序列化时创建一次，见Json
+ *
+ * @param <T> 反序列化的类型
+ */
+@FunctionalInterface
+public interface JsonDeserializer<T> {
+
+    /**
+     * 读取下一个值，JSON为null时返回null(基本类型返回默认值)
+     */
+    T read(JsonReader in) throws IOException;
+
+}
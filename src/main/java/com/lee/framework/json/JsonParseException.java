@@ -0,0 +1,19 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+
+/**
+ * JSON的语法错误，或JSON的值不能转为目标类型
+ */
+public class JsonParseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonParseException(String message) {
+        super(message);
+    }
+
+    public JsonParseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
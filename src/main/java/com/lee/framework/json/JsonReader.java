@@ -0,0 +1,598 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 流式读取JSON的读取器，直接从输入流按UTF-8解析，不把整个请求体读入内存
+ * 字节缓冲区和字符缓冲区都可以复用，每个线程复用同一个实例(见Json.read)，不是线程安全的
+ * 按调用方的读取顺序逐个解析：beginObject/nextName/nextString.../endObject，同时校验逗号、冒号和括号的配对
+ */
+public final class JsonReader {
+
+    /**
+     * 下一个值的类型
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    //最大嵌套层数,避免恶意的深层嵌套使反序列化器递归过深
+    private static final int MAX_DEPTH = 256;
+
+    //所在的上下文
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    //已读取属性名,等待":"
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    //已从缓冲区移出的字节数,用于错误信息中的位置
+    private long consumed;
+    private InputStream in;
+
+    private int[] stack = new int[32];
+    private int depth;
+    //已解析但还未被读取的下一个值的类型,为null时需要解析;NAME/STRING的开头引号已读取
+    private Token peeked;
+    //peeked为BOOLEAN时的值
+    private boolean peekedBoolean;
+
+    //解码字符串和数字的缓冲区
+    private char[] chars = new char[64];
+    private int charCount;
+
+    JsonReader(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * 切换输入流并清空状态，in为null时释放对输入流的引用
+     */
+    JsonReader reset(InputStream in) {
+        this.in = in;
+        this.pos = 0;
+        this.limit = 0;
+        this.consumed = 0;
+        this.depth = 1;
+        this.stack[0] = EMPTY_DOCUMENT;
+        this.peeked = null;
+        return this;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * @return 当前对象或数组中是否还有元素
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * 读取属性名到字符缓冲区而不创建字符串，之后可以用nameEquals比较，用于按预先计算的哈希值查找属性
+     *
+     * @return 属性名的哈希值，与相同内容的String.hashCode()相等
+     */
+    int nextNameHash() throws IOException {
+        expect(Token.NAME);
+        readChars();
+        int h = 0;
+        for (int i = 0; i < charCount; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    /**
+     * @return 上一次nextNameHash读取的属性名是否与name相同
+     */
+    boolean nameEquals(String name) {
+        if (name.length() != charCount) {
+            return false;
+        }
+        for (int i = 0; i < charCount; i++) {
+            if (chars[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 字符串的值，数字按原文返回
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return readString();
+        }
+        if (token == Token.NUMBER) {
+            peeked = null;
+            return new String(chars, 0, charCount);
+        }
+        throw syntaxError("Expected STRING but was " + token);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    public long nextLong() throws IOException {
+        //不超过18位的整数直接从字符缓冲区解析,不创建字符串
+        if (peek() == Token.NUMBER && isShortInteger()) {
+            peeked = null;
+            boolean negative = chars[0] == '-';
+            long value = 0;
+            for (int i = negative ? 1 : 0; i < charCount; i++) {
+                value = value * 10 + (chars[i] - '0');
+            }
+            return negative ? -value : value;
+        }
+        String number = nextNumber();
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            //"1.0"、"1e3"等整数值
+            double value = Double.parseDouble(number);
+            if (value != (long) value) {
+                throw syntaxError("Expected a long but was " + number);
+            }
+            return (long) value;
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() throws IOException {
+        return Double.parseDouble(nextNumber());
+    }
+
+    //chars中的数字是否为不超过18位的整数,不会溢出long
+    private boolean isShortInteger() {
+        int digits = chars[0] == '-' ? charCount - 1 : charCount;
+        if (digits > 18) {
+            return false;
+        }
+        for (int i = charCount - digits; i < charCount; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //数字的原文,字符串形式的数字("123")也接受
+    private String nextNumber() throws IOException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw syntaxError("Expected NUMBER but was " + token);
+        }
+        String number = nextString().trim();
+        if (token == Token.STRING && !isNumber(number)) {
+            throw syntaxError("Expected NUMBER but was \"" + number + "\"");
+        }
+        return number;
+    }
+
+    /**
+     * 跳过下一个值(包括对象、数组中的所有内容)，用于忽略未知的属性
+     */
+    public void skipValue() throws IOException {
+        int level = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            switch (token) {
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    level++;
+                    break;
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    level++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    level--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipString();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    break;
+            }
+        } while (level > 0);
+    }
+
+    /**
+     * @return 已读取的字节数
+     */
+    public long getPosition() {
+        return consumed + pos;
+    }
+
+    JsonParseException syntaxError(String message) {
+        return new JsonParseException(message + " at byte " + getPosition());
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int context) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = context;
+    }
+
+    //根据所在的上下文读取分隔符,再确定下一个值的类型
+    private Token doPeek() throws IOException {
+        int context = stack[depth - 1];
+        if (context == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+        } else if (context == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return Token.END_ARRAY;
+            }
+            if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (context == EMPTY_OBJECT || context == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            if (context == NONEMPTY_OBJECT) {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return Token.END_OBJECT;
+                }
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            int c = nextNonWhitespace();
+            if (c == '"') {
+                return Token.NAME;
+            }
+            if (c == '}' && context == EMPTY_OBJECT) {
+                return Token.END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (context == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (context == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (context == NONEMPTY_DOCUMENT) {
+            //只允许一个顶层值
+            if (nextNonWhitespace() != -1) {
+                throw syntaxError("Unexpected content after document");
+            }
+            return Token.END_DOCUMENT;
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                if (context == EMPTY_DOCUMENT) {
+                    return Token.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected end of input");
+            case ']':
+                if (context == EMPTY_ARRAY) {
+                    return Token.END_ARRAY;
+                }
+                throw syntaxError("Unexpected ']'");
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '"':
+                return Token.STRING;
+            case 't':
+                literal("rue");
+                peekedBoolean = true;
+                return Token.BOOLEAN;
+            case 'f':
+                literal("alse");
+                peekedBoolean = false;
+                return Token.BOOLEAN;
+            case 'n':
+                literal("ull");
+                return Token.NULL;
+            default:
+                if (c == '-' || c >= '0' && c <= '9') {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    //读取数字的原文到chars,由调用方按需要的类型解析
+    private void readNumber(int first) throws IOException {
+        charCount = 0;
+        appendChar((char) first);
+        while (pos < limit || fill()) {
+            int c = buffer[pos];
+            if (c >= '0' && c <= '9' || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                appendChar((char) c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (!isNumber(chars, charCount)) {
+            throw syntaxError("Invalid number " + new String(chars, 0, charCount));
+        }
+    }
+
+    private static boolean isNumber(String s) {
+        return isNumber(s.toCharArray(), s.length());
+    }
+
+    //前n个字符是否为JSON格式的数字:-?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+    private static boolean isNumber(char[] s, int n) {
+        int i = 0;
+        if (i < n && s[i] == '-') i++;
+        int start = i;
+        while (i < n && s[i] >= '0' && s[i] <= '9') i++;
+        if (i == start || s[start] == '0' && i - start > 1) return false;
+        if (i < n && s[i] == '.') {
+            start = ++i;
+            while (i < n && s[i] >= '0' && s[i] <= '9') i++;
+            if (i == start) return false;
+        }
+        if (i < n && (s[i] == 'e' || s[i] == 'E')) {
+            i++;
+            if (i < n && (s[i] == '+' || s[i] == '-')) i++;
+            start = i;
+            while (i < n && s[i] >= '0' && s[i] <= '9') i++;
+            if (i == start) return false;
+        }
+        return i == n;
+    }
+
+    //读取开头引号之后的字符串,按UTF-8解码多字节字符并处理转义
+    private String readString() throws IOException {
+        readChars();
+        return new String(chars, 0, charCount);
+    }
+
+    //读取开头引号之后的字符串到chars
+    private void readChars() throws IOException {
+        charCount = 0;
+        while (true) {
+            //缓冲区中连续的普通ASCII字符一次复制,不逐个字节调用read()
+            int start = pos;
+            int end = pos;
+            while (end < limit) {
+                byte b = buffer[end];
+                if (b < 0x20 || b == '"' || b == '\\') {
+                    break;
+                }
+                end++;
+            }
+            if (end > start) {
+                if (charCount + end - start > chars.length) {
+                    chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + end - start));
+                }
+                for (int i = start; i < end; i++) {
+                    chars[charCount++] = (char) buffer[i];
+                }
+                pos = end;
+            }
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                appendChar(readEscape());
+            } else if (c < 0) {
+                throw syntaxError("Unterminated string");
+            } else if (c < 0x20) {
+                throw syntaxError("Unescaped control character in string");
+            } else if (c < 0x80) {
+                appendChar((char) c);
+            } else {
+                appendCodePoint(readUtf8(c));
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                readEscape();
+            } else if (c < 0) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    //解码以first开头的多字节UTF-8字符,拒绝过长编码和代理区的码点
+    private int readUtf8(int first) throws IOException {
+        int extra;
+        int codePoint;
+        if (first >= 0xC2 && first < 0xE0) {
+            extra = 1;
+            codePoint = first & 0x1F;
+        } else if (first >= 0xE0 && first < 0xF0) {
+            extra = 2;
+            codePoint = first & 0x0F;
+        } else if (first >= 0xF0 && first < 0xF5) {
+            extra = 3;
+            codePoint = first & 0x07;
+        } else {
+            throw syntaxError("Invalid UTF-8 byte");
+        }
+        for (int i = 0; i < extra; i++) {
+            int b = read();
+            if (b < 0 || (b & 0xC0) != 0x80) {
+                throw syntaxError("Invalid UTF-8 sequence");
+            }
+            codePoint = codePoint << 6 | b & 0x3F;
+        }
+        if (extra == 2 && codePoint < 0x800 || extra == 3 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT)
+                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            throw syntaxError("Invalid UTF-8 sequence");
+        }
+        return codePoint;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            appendChar((char) codePoint);
+        } else {
+            appendChar(Character.highSurrogate(codePoint));
+            appendChar(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    private void appendChar(char c) {
+        if (charCount == chars.length) {
+            chars = Arrays.copyOf(chars, charCount * 2);
+        }
+        chars[charCount++] = c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            int c = buffer[pos++] & 0xFF;
+            if (c > ' ' || c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    //读取一个字节(0~255),输入结束返回-1
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+}
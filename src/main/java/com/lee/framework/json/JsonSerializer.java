@@ -0,0 +1,15 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+
+/**
+ * 把一种类型的对象写为JSON，每个类型只在第一次序列化时创建一次，见Json
+ *
+ * @param <T> 序列化的类型
+ */
+@FunctionalInterface
+public interface JsonSerializer<T> {
+
+    void write(T value, JsonWriter out) throws IOException;
+
+}
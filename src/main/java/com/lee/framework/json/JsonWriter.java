@@ -0,0 +1,243 @@
+package com.lee.framework.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 流式JSON输出，直接以UTF-8编码写入输出流
+ * 内部的字节缓冲区写满时才写入输出流，每个线程复用同一个JsonWriter(及其缓冲区)，见Json.write
+ */
+public final class JsonWriter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    //long的最小值无法取反，直接输出
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    private final byte[] buffer;
+    private int position;
+    private OutputStream out;
+    //对象/数组中是否需要在下一个元素前写","
+    private boolean comma;
+
+    JsonWriter(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    //绑定输出流，复用前调用
+    JsonWriter reset(OutputStream out) {
+        this.out = out;
+        this.position = 0;
+        this.comma = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separator();
+        writeByte('{');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        writeByte('}');
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separator();
+        writeByte('[');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        writeByte(']');
+        comma = true;
+        return this;
+    }
+
+    /**
+     * 写对象的属性名，之后必须写一个值
+     */
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        writeString(name);
+        writeByte(':');
+        comma = false;
+        return this;
+    }
+
+    /**
+     * 写属性名，属性名已预先编码(含引号和冒号)，如"\"name\":"
+     */
+    public JsonWriter name(byte[] encodedName) throws IOException {
+        separator();
+        writeBytes(encodedName);
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        separator();
+        writeString(value);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        writeLong(value);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        //JSON不支持NaN和Infinity
+        if (Double.isNaN(value) || Double.isInfinite(value)) return nullValue();
+        separator();
+        writeAscii(Double.toString(value));
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        writeBytes(value ? TRUE : FALSE);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separator();
+        writeBytes(NULL);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * 直接输出数字的字符串形式，如BigDecimal.toString()
+     */
+    public JsonWriter rawNumber(String number) throws IOException {
+        separator();
+        writeAscii(number);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * 把缓冲区写入输出流
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void separator() throws IOException {
+        if (comma) {
+            writeByte(',');
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) flush();
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flush();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeAscii(String str) throws IOException {
+        for (int i = 0; i < str.length(); i++) {
+            writeByte(str.charAt(i));
+        }
+    }
+
+    //不借助Long.toString，直接把数字写入缓冲区
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        if (buffer.length - position < 20) flush();
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        //数字是倒序写入的，反转
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    //写带引号的字符串，转义并编码为UTF-8
+    private void writeString(String str) throws IOException {
+        writeByte('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    writeByte('\\');
+                    writeByte(c);
+                } else if (c >= 0x20) {
+                    writeByte(c);
+                } else if (c == '\n') {
+                    writeByte('\\');
+                    writeByte('n');
+                } else if (c == '\r') {
+                    writeByte('\\');
+                    writeByte('r');
+                } else if (c == '\t') {
+                    writeByte('\\');
+                    writeByte('t');
+                } else {
+                    writeByte('\\');
+                    writeByte('u');
+                    writeByte('0');
+                    writeByte('0');
+                    writeByte(HEX[c >> 4]);
+                    writeByte(HEX[c & 0xF]);
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                writeByte(0xF0 | (cp >> 18));
+                writeByte(0x80 | ((cp >> 12) & 0x3F));
+                writeByte(0x80 | ((cp >> 6) & 0x3F));
+                writeByte(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符
+                writeByte('?');
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+}
@@ -0,0 +1,228 @@
+package com.lee.framework.processor;
+
+import com.lee.framework.annotation.MyAutowired;
+import com.lee.framework.annotation.MyController;
+import com.lee.framework.annotation.MyControllerAdvice;
+import com.lee.framework.annotation.MyInterceptor;
+import com.lee.framework.annotation.MyService;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译期生成组件索引的注解处理器
+ * 把所有标注了@MyController、@MyService、@MyControllerAdvice和@MyInterceptor的类写入META-INF/my-components.properties，
+ * MyApplicationContext启动时读取索引，不再扫描文件系统(也因此可以在jar包中运行)
+ * <p>
+ * 索引每行一个组件：全类名=类型;beanId1,beanId2;属性名1:beanId1,属性名2:beanId2;标记;构造器参数beanId1,构造器参数beanId2
+ * beanId的规则与MyApplicationContext.doRegisterBeanDefinitions一致，构造器和属性的规则与BeanInjector一致
+ */
+@SupportedAnnotationTypes({"com.lee.framework.annotation.MyController", "com.lee.framework.annotation.MyService",
+        "com.lee.framework.annotation.MyControllerAdvice", "com.lee.framework.annotation.MyInterceptor"})
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    // 索引文件的位置
+    public static final String INDEX_LOCATION = "META-INF/my-components.properties";
+
+    // 可池化bean的接口,不作为beanId
+    private static final String POOLABLE = "com.lee.framework.context.Poolable";
+
+    // key：全类名  value：索引内容，TreeMap使生成的索引顺序稳定
+    private final Map<String, String> components = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(MyController.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                //controller的beanId为首字母小写的simpleClassName
+                MyController controller = type.getAnnotation(MyController.class);
+                components.put(className(type), "controller;" + lowerFirstChar(type.getSimpleName().toString())
+                        + ";" + injections(type) + ";" + flags(false, controller.scope(), controller.poolSize())
+                        + ";" + constructorArgs(type));
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(MyService.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                MyService service = type.getAnnotation(MyService.class);
+                components.put(className(type), "service;" + serviceBeanIds(type) + ";" + injections(type)
+                        + ";" + flags(service.lazy(), service.scope(), service.poolSize()) + ";" + constructorArgs(type));
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(MyControllerAdvice.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                //advice若设置了beanName则使用其自定义的beanName,否则为首字母小写的simpleClassName
+                String beanId = type.getAnnotation(MyControllerAdvice.class).value().trim();
+                if (beanId.isEmpty()) {
+                    beanId = lowerFirstChar(type.getSimpleName().toString());
+                }
+                components.put(className(type), "advice;" + beanId + ";" + injections(type) + ";;" + constructorArgs(type));
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(MyInterceptor.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                //拦截器的beanId为首字母小写的simpleClassName
+                components.put(className(type), "interceptor;" + lowerFirstChar(type.getSimpleName().toString())
+                        + ";" + injections(type) + ";;" + constructorArgs(type));
+            }
+        }
+        if (roundEnv.processingOver() && !components.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    //service若设置了beanName则使用其自定义的beanName,否则用首字母小写的类名及其实现的每个接口的类名
+    private String serviceBeanIds(TypeElement type) {
+        String beanId = type.getAnnotation(MyService.class).value().trim();
+        if (!beanId.isEmpty()) {
+            return beanId;
+        }
+        List<String> beanIds = new ArrayList<>();
+        beanIds.add(lowerFirstChar(type.getSimpleName().toString()));
+        for (TypeMirror i : type.getInterfaces()) {
+            //框架的Poolable接口不作为beanId
+            if (!processingEnv.getTypeUtils().erasure(i).toString().equals(POOLABLE)) {
+                beanIds.add(simpleName(i));
+            }
+        }
+        return String.join(",", beanIds);
+    }
+
+    //非默认值的延迟创建、作用域、对象池大小标记,如"lazy"、"scope=prototype,pool=16"
+    private static String flags(boolean lazy, String scope, int poolSize) {
+        List<String> flags = new ArrayList<>();
+        if (lazy) {
+            flags.add("lazy");
+        }
+        if (!"singleton".equals(scope)) {
+            flags.add("scope=" + scope);
+        }
+        if (poolSize > 0) {
+            flags.add("pool=" + poolSize);
+        }
+        return String.join(",", flags);
+    }
+
+    //此类及其父类中标注了@MyAutowired的非静态属性及其注入的beanId,没有指定beanName时使用属性类型的类名
+    private String injections(TypeElement type) {
+        List<String> injections = new ArrayList<>();
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (Element member : t.getEnclosedElements()) {
+                MyAutowired autowired = member.getAnnotation(MyAutowired.class);
+                if (member.getKind() != ElementKind.FIELD || autowired == null
+                        || member.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                injections.add(member.getSimpleName() + ":" + beanId(autowired, member.asType()));
+            }
+        }
+        return String.join(",", injections);
+    }
+
+    //构造器每个参数注入的beanId,构造器的选择规则：标注了@MyAutowired的构造器 > 唯一的构造器 > 无参构造器
+    private String constructorArgs(TypeElement type) {
+        List<ExecutableElement> constructors = new ArrayList<>();
+        ExecutableElement constructor = null;
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                constructors.add((ExecutableElement) member);
+                if (member.getAnnotation(MyAutowired.class) != null) {
+                    constructor = (ExecutableElement) member;
+                }
+            }
+        }
+        if (constructor == null && constructors.size() == 1) {
+            constructor = constructors.get(0);
+        }
+        if (constructor == null) {
+            return "";
+        }
+        List<String> beanIds = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            beanIds.add(beanId(parameter.getAnnotation(MyAutowired.class), parameter.asType()));
+        }
+        return String.join(",", beanIds);
+    }
+
+    //@MyAutowired指定的beanName,没有指定时使用类型的类名
+    private String beanId(MyAutowired autowired, TypeMirror type) {
+        String beanId = autowired == null ? "" : autowired.value().trim();
+        return beanId.isEmpty() ? simpleName(type) : beanId;
+    }
+
+    //父类,已到Object时返回null
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals(Object.class.getName()) ? null : element;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# generated by " + getClass().getName() + "\n");
+                for (Map.Entry<String, String> entry : components.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot write " + INDEX_LOCATION + " : " + e);
+        }
+    }
+
+    //二进制类名,内部类以"$"分隔,与Class.forName一致
+    private String className(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String simpleName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return ((DeclaredType) erased).asElement().getSimpleName().toString();
+        }
+        return erased.toString();
+    }
+
+    //把str的首字母变为小写
+    private static String lowerFirstChar(String str) {
+        char[] chars = str.toCharArray();
+        chars[0] += 32;
+        return String.valueOf(chars);
+    }
+}
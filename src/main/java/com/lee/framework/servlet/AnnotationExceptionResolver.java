@@ -0,0 +1,216 @@
+package com.lee.framework.servlet;
+
+import com.lee.framework.annotation.MyExceptionHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 调用@MyExceptionHandler方法处理异常：先找抛出异常的controller中的方法，再找@MyControllerAdvice中的方法
+ * 异常类型与方法的匹配结果按异常类缓存，同一种异常之后只需一次map查找
+ * 异常处理方法的参数可以是异常、HttpServletRequest、HttpServletResponse、Handler，按类型注入
+ * 返回值与handler方法相同：标注@MyResponseBody时序列化为JSON，返回MyModelAndView时解析视图，void时由方法自己输出
+ */
+final class AnnotationExceptionResolver implements HandlerExceptionResolver {
+
+    /**
+     * 输出异常处理方法的返回值，即dispatcher的processResult(与handler方法的返回值相同)
+     */
+    interface ResultWriter {
+        void write(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object value) throws Exception;
+    }
+
+    private final ResultWriter resultWriter;
+    // key：controller的类  value：此controller中的异常处理方法
+    private final Map<Class<?>, ExceptionHandlers> controllerHandlers = new HashMap<>();
+    // 所有@MyControllerAdvice中的异常处理方法
+    private final ExceptionHandlers adviceHandlers = new ExceptionHandlers();
+
+    AnnotationExceptionResolver(ResultWriter resultWriter) {
+        this.resultWriter = resultWriter;
+    }
+
+    /**
+     * 注册controller中的异常处理方法,只处理此controller的handler抛出的异常
+     *
+     * @param controllerFactory prototype/request作用域的controller每次从容器中获取,singleton时为null
+     */
+    void registerController(Class<?> controllerClass, Object controller, Supplier<Object> controllerFactory) {
+        ExceptionHandlers handlers = new ExceptionHandlers();
+        handlers.addAll(controllerClass, controller, controllerFactory);
+        if (!handlers.isEmpty()) {
+            controllerHandlers.put(controllerClass, handlers);
+        }
+    }
+
+    /**
+     * 注册@MyControllerAdvice中的异常处理方法,处理所有handler抛出的异常
+     */
+    void registerAdvice(Object advice) {
+        adviceHandlers.addAll(advice.getClass(), advice, null);
+    }
+
+    /**
+     * @return 是否没有任何异常处理方法
+     */
+    boolean isEmpty() {
+        return controllerHandlers.isEmpty() && adviceHandlers.isEmpty();
+    }
+
+    @Override
+    public boolean resolveException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Throwable ex) throws Exception {
+        return resolveException(req, resp, handler, null, ex);
+    }
+
+    /**
+     * @param controller 抛出异常的controller实例，controller中的异常处理方法在此实例上调用；
+     *                   为null时(如还没有调用handler)prototype/request作用域的controller从容器中获取
+     */
+    boolean resolveException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object controller,
+                             Throwable ex) throws Exception {
+        ExceptionHandlers local = handler == null || handler.controllerClass == null ? null : controllerHandlers.get(handler.controllerClass);
+        Throwable target = ex;
+        ExceptionHandlerMethod method = find(local, target);
+        //异常本身没有匹配的方法时,再按它的cause匹配(如handler包装后抛出的异常)
+        if (method == null && ex.getCause() != null) {
+            target = ex.getCause();
+            method = find(local, target);
+        }
+        if (method == null) {
+            return false;
+        }
+        method.invoke(req, resp, handler, controller, target, resultWriter);
+        return true;
+    }
+
+    //controller中的方法优先于advice中的方法
+    private ExceptionHandlerMethod find(ExceptionHandlers local, Throwable ex) {
+        ExceptionHandlerMethod method = local == null ? null : local.find(ex.getClass());
+        return method != null ? method : adviceHandlers.find(ex.getClass());
+    }
+
+    //一个bean中的异常处理方法,及按异常类缓存的匹配结果
+    private static final class ExceptionHandlers {
+        //匹配结果中表示没有匹配方法的占位符,ConcurrentHashMap中不能存放null
+        private static final ExceptionHandlerMethod NONE = new ExceptionHandlerMethod(null, 0);
+
+        private final List<Class<? extends Throwable>> types = new ArrayList<>();
+        private final List<ExceptionHandlerMethod> methods = new ArrayList<>();
+        // key：异常类  value：匹配的方法,没有时为NONE
+        private final Map<Class<?>, ExceptionHandlerMethod> cache = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        void addAll(Class<?> clazz, Object bean, Supplier<Object> beanFactory) {
+            for (Method method : clazz.getMethods()) {
+                MyExceptionHandler annotation = method.getAnnotation(MyExceptionHandler.class);
+                if (annotation == null) {
+                    continue;
+                }
+                List<Class<? extends Throwable>> handled = new ArrayList<>();
+                for (Class<? extends Throwable> type : annotation.value()) {
+                    handled.add(type);
+                }
+                //没有指定异常类型时,使用参数中的异常类型
+                if (handled.isEmpty()) {
+                    for (Class<?> parameterType : method.getParameterTypes()) {
+                        if (Throwable.class.isAssignableFrom(parameterType)) {
+                            handled.add((Class<? extends Throwable>) parameterType);
+                        }
+                    }
+                }
+                if (handled.isEmpty()) {
+                    throw new IllegalStateException("No exception type declared for @MyExceptionHandler " + method);
+                }
+                Handler handler = new Handler(bean, method, null);
+                handler.controllerFactory = beanFactory;
+                ExceptionHandlerMethod handlerMethod = new ExceptionHandlerMethod(handler, annotation.status());
+                for (Class<? extends Throwable> type : handled) {
+                    int existing = types.indexOf(type);
+                    if (existing >= 0) {
+                        throw new IllegalStateException("Ambiguous @MyExceptionHandler for " + type.getName() + " : "
+                                + method + " , already mapped to " + methods.get(existing).handler.method);
+                    }
+                    types.add(type);
+                    methods.add(handlerMethod);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return types.isEmpty();
+        }
+
+        /**
+         * @return 处理此异常类的方法,没有返回null
+         */
+        ExceptionHandlerMethod find(Class<?> exceptionClass) {
+            if (types.isEmpty()) {
+                return null;
+            }
+            ExceptionHandlerMethod method = cache.computeIfAbsent(exceptionClass, this::match);
+            return method == NONE ? null : method;
+        }
+
+        //声明的异常类型中,在继承链上离此异常类最近的
+        private ExceptionHandlerMethod match(Class<?> exceptionClass) {
+            ExceptionHandlerMethod best = NONE;
+            int bestDepth = Integer.MAX_VALUE;
+            for (int i = 0; i < types.size(); i++) {
+                if (!types.get(i).isAssignableFrom(exceptionClass)) {
+                    continue;
+                }
+                int depth = 0;
+                for (Class<?> c = exceptionClass; c != types.get(i); c = c.getSuperclass()) {
+                    depth++;
+                }
+                if (depth < bestDepth) {
+                    best = methods.get(i);
+                    bestDepth = depth;
+                }
+            }
+            return best;
+        }
+    }
+
+    //一个异常处理方法
+    private static final class ExceptionHandlerMethod {
+        private final Handler handler;
+        //响应的状态码
+        private final int status;
+
+        ExceptionHandlerMethod(Handler handler, int status) {
+            this.handler = handler;
+            this.status = status;
+        }
+
+        void invoke(HttpServletRequest req, HttpServletResponse resp, Handler failed, Object controller, Throwable ex,
+                    ResultWriter resultWriter) throws Exception {
+            Class<?>[] parameterTypes = handler.parameterTypes;
+            Object[] args = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Class<?> type = parameterTypes[i];
+                if (type.isInstance(ex)) {
+                    args[i] = ex;
+                } else if (type == HttpServletRequest.class) {
+                    args[i] = req;
+                } else if (type == HttpServletResponse.class) {
+                    args[i] = resp;
+                } else if (type == Handler.class) {
+                    args[i] = failed;
+                }
+            }
+            resp.setStatus(status);
+            //controller中的方法在抛出异常的实例上调用,advice中的方法(controllerFactory为null)在advice上调用
+            Object bean = controller != null && handler.controllerFactory != null ? controller : handler.getController();
+            Object result = handler.invoker.invoke(bean, args);
+            resultWriter.write(req, resp, handler, result);
+        }
+    }
+}
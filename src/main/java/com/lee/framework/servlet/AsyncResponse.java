@@ -0,0 +1,129 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次异步请求，包装AsyncContext
+ * 超时和handler完成可能同时发生，只有先到的一方可以输出响应并结束请求
+ * 在handlerExecutor中调用的handler边执行边输出，通过GuardedResponseWrapper与超时互斥(锁为此对象)，超时后不能再输出
+ */
+class AsyncResponse {
+
+    //保存在request中的属性名，同一个请求多次开启异步时复用
+    private static final String ATTRIBUTE = AsyncResponse.class.getName();
+
+    private final AsyncContext asyncContext;
+    private final HttpServletResponse response;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    //是否已由超时结束请求,持有此对象的锁时读写
+    private boolean timedOut;
+    //在handlerExecutor中执行的handler,超时时取消(中断)
+    private volatile Future<?> task;
+
+    private AsyncResponse(AsyncContext asyncContext, HttpServletResponse response) {
+        this.asyncContext = asyncContext;
+        this.response = response;
+    }
+
+    /**
+     * 开启异步请求，已开启时返回已有的
+     *
+     * @param timeout 超时时间(毫秒)，超时返回503
+     */
+    static AsyncResponse start(HttpServletRequest req, HttpServletResponse resp, long timeout) {
+        AsyncResponse existing = (AsyncResponse) req.getAttribute(ATTRIBUTE);
+        if (existing != null) {
+            return existing;
+        }
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(timeout);
+        AsyncResponse asyncResponse = new AsyncResponse(asyncContext, resp);
+        req.setAttribute(ATTRIBUTE, asyncResponse);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                asyncResponse.timeout();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        return asyncResponse;
+    }
+
+    /**
+     * 超时：抢先结束请求时，不再允许handler输出，取消handler的执行，响应还未提交时输出503
+     * 与GuardedResponseWrapper的每次输出互斥，结束请求之后handler不会再写入响应
+     */
+    private synchronized void timeout() throws IOException {
+        if (!tryComplete()) {
+            return;
+        }
+        timedOut = true;
+        Future<?> task = this.task;
+        if (task != null) {
+            task.cancel(true);
+        }
+        //handler已经输出了部分响应时只能直接结束
+        if (!response.isCommitted()) {
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            try {
+                response.getWriter().write("503 Async Timeout");
+            } catch (IllegalStateException e) {
+                //handler已经调用过getOutputStream()
+                response.getOutputStream().write("503 Async Timeout".getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        asyncContext.complete();
+    }
+
+    /**
+     * @return 是否已由超时结束请求
+     */
+    synchronized boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * 记录在handlerExecutor中执行的handler，超时时取消
+     */
+    void setTask(Future<?> task) {
+        this.task = task;
+        //提交之前已经超时
+        if (isTimedOut()) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * 抢占结束请求的权利，返回false说明请求已经超时或已结束，不能再输出响应
+     */
+    boolean tryComplete() {
+        return completed.compareAndSet(false, true);
+    }
+
+    /**
+     * 结束请求，须先调用tryComplete()且返回true
+     */
+    void complete() {
+        asyncContext.complete();
+    }
+}
@@ -0,0 +1,201 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * 把handler和视图输出的响应体暂存在内存中的响应包装，用于ResponseCache保存渲染后的字节，以及由ResponseEncoder生成ETag和压缩
+ * 响应头直接设置到被包装的响应上，响应体在copyBodyToResponse时才写出
+ * 暂存的响应体超过maxBytes时，先写出已暂存的部分，之后直接输出到被包装的响应(不再生成ETag、压缩和缓存)，避免大页面整个留在堆中
+ */
+class CachingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    //暂存的响应体的上限(字节)
+    private final int maxBytes;
+    //超过上限后直接输出到被包装的响应的输出流,此前为null
+    private OutputStream direct;
+    //handler的输出流和writer都写入这里:未超过上限时暂存,超过后直接输出
+    private final OutputStream body = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            if (direct == null && buffer.size() + 1 > maxBytes) {
+                overflow();
+            }
+            if (direct != null) {
+                direct.write(b);
+            } else {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (direct == null && buffer.size() + len > maxBytes) {
+                overflow();
+            }
+            if (direct != null) {
+                direct.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+    };
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    private int status = SC_OK;
+    private String contentType;
+    private String etag;
+
+    /**
+     * @param maxBytes 暂存的响应体的上限(字节)
+     */
+    CachingResponseWrapper(HttpServletResponse response, int maxBytes) {
+        super(response);
+        this.maxBytes = maxBytes;
+    }
+
+    //写出已暂存的响应体,之后直接输出
+    private void overflow() throws IOException {
+        direct = getResponse().getOutputStream();
+        buffer.writeTo(direct);
+        buffer.reset();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    body.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (outputStream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        super.setContentType(type);
+        this.contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        String type = super.getContentType();
+        return type == null ? contentType : type;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        super.setHeader(name, value);
+        if ("ETag".equalsIgnoreCase(name)) {
+            this.etag = value;
+        }
+    }
+
+    /**
+     * @return handler设置的ETag，没有设置返回null
+     */
+    String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        super.setStatus(sc);
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        super.sendError(sc);
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        super.sendError(sc, msg);
+        this.status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    //响应体在copyBodyToResponse时一次写出,此前不提交响应;超过上限后直接输出时才提交
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (direct != null) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        buffer.reset();
+    }
+
+    /**
+     * @return 已输出的响应体，超过上限已直接输出时返回null
+     */
+    byte[] toByteArray() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return direct != null ? null : buffer.toByteArray();
+    }
+
+    /**
+     * 把暂存的响应体写入被包装的响应
+     */
+    void copyBodyToResponse(byte[] body) throws IOException {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        if (!response.isCommitted()) {
+            response.setContentLength(body.length);
+        }
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,94 @@
+package com.lee.framework.servlet;
+
+import com.lee.framework.servlet.bind.MissingRequestParamException;
+import com.lee.framework.servlet.bind.RequestBindingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认的异常解析器，解析器链的最后一个，总是能处理异常
+ * 只输出状态码和简短的错误信息，不把堆栈输出到响应中
+ * 日志按异常类采样：每种异常的第1次及之后每exception.logSampleRate次才输出一次带堆栈的日志，避免大量出错时日志拖垮服务
+ */
+class DefaultExceptionResolver implements HandlerExceptionResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultExceptionResolver.class);
+
+    //配置文件中的参数名
+    static final String LOG_SAMPLE_RATE = "exception.logSampleRate";
+
+    //500的响应体,预先编码
+    private static final byte[] INTERNAL_SERVER_ERROR = "500 Internal Server Error".getBytes(StandardCharsets.UTF_8);
+
+    //每多少次同类异常输出一次日志,0表示不输出
+    private final int logSampleRate;
+    // key：异常类  value：出现的次数
+    private final Map<Class<?>, AtomicLong> occurrences = new ConcurrentHashMap<>();
+
+    DefaultExceptionResolver(Properties config) {
+        this.logSampleRate = Integer.parseInt(config.getProperty(LOG_SAMPLE_RATE, "1").trim());
+    }
+
+    @Override
+    public boolean resolveException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Throwable ex) throws IOException {
+        if (ex instanceof MissingRequestParamException) {
+            //缺少必须的请求参数,客户端的错误,不记录日志
+            write(resp, HttpServletResponse.SC_BAD_REQUEST,
+                    ("400 Bad Request : " + ex.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        if (ex instanceof RequestBindingException) {
+            //请求体格式错误、过大或Content-Type不支持,客户端的错误,不记录日志
+            RequestBindingException bindingException = (RequestBindingException) ex;
+            write(resp, bindingException.getStatus(),
+                    (bindingException.getStatus() + " " + ex.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        if (ex instanceof ResponseStatusException) {
+            //路由时请求方法、Content-Type等不匹配,客户端的错误,不记录日志
+            ResponseStatusException statusException = (ResponseStatusException) ex;
+            if (statusException.getAllow() != null) {
+                resp.setHeader("Allow", statusException.getAllow());
+            }
+            write(resp, statusException.getStatus(), statusException.getMessage().getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        log(req, ex);
+        write(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR);
+        return true;
+    }
+
+    /**
+     * 按采样率记录异常日志
+     */
+    void log(HttpServletRequest req, Throwable ex) {
+        if (logSampleRate <= 0) {
+            return;
+        }
+        long count = occurrences.computeIfAbsent(ex.getClass(), c -> new AtomicLong()).incrementAndGet();
+        if ((count - 1) % logSampleRate == 0) {
+            logger.error((req == null ? "request" : req.getRequestURI()) + " failed, "
+                    + ex.getClass().getName() + " occurred " + count + " times", ex);
+        }
+    }
+
+    //handler已经调用过getOutputStream()时不能再获取writer,反之亦然
+    private static void write(HttpServletResponse resp, int status, byte[] body) throws IOException {
+        resp.setStatus(status);
+        resp.setContentType("text/plain;charset=UTF-8");
+        try {
+            resp.getOutputStream().write(body);
+        } catch (IllegalStateException e) {
+            resp.getWriter().write(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+}
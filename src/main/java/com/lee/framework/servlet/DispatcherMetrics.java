@@ -0,0 +1,147 @@
+package com.lee.framework.servlet;
+
+import com.lee.framework.annotation.MyResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * dispatcher的指标：每个handler一个HandlerMetrics，以及找不到handler(404)的请求数
+ * 通过内置的handler以JSON输出(默认/metrics.json)，metrics.jmx=true时把每个HandlerMetrics注册为JMX MBean
+ * metrics=false(默认)时不创建，dispatcher中不会调用System.nanoTime()
+ */
+public class DispatcherMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(DispatcherMetrics.class);
+
+    //配置文件中的参数名
+    static final String METRICS = "metrics";
+    static final String METRICS_PATH = "metrics.path";
+    static final String METRICS_JMX = "metrics.jmx";
+
+    //JMX中ObjectName的domain
+    private static final String JMX_DOMAIN = "com.lee.framework";
+
+    //输出指标的url
+    private final String path;
+    //是否注册JMX MBean
+    private final boolean jmx;
+    //所有handler的指标,按注册顺序
+    private final List<HandlerMetrics> handlerMetrics = new ArrayList<>();
+    //已注册的MBean,destroy时注销
+    private final List<ObjectName> registered = new ArrayList<>();
+    //找不到handler的请求数
+    private final LongAdder notFound = new LongAdder();
+    //响应缓存,为null时不输出其统计信息
+    private ResponseCache responseCache;
+
+    private DispatcherMetrics(String path, boolean jmx) {
+        this.path = path;
+        this.jmx = jmx;
+    }
+
+    /**
+     * @return 没有开启metrics时返回null
+     */
+    static DispatcherMetrics create(Properties config) {
+        if (!Boolean.parseBoolean(config.getProperty(METRICS, "false").trim())) {
+            return null;
+        }
+        String path = config.getProperty(METRICS_PATH, "/metrics.json").trim();
+        boolean jmx = Boolean.parseBoolean(config.getProperty(METRICS_JMX, "false").trim());
+        logger.info("metrics: " + path + (jmx ? ", jmx" : ""));
+        return new DispatcherMetrics(path, jmx);
+    }
+
+    /**
+     * 为handler创建指标,所有handler注册完后再调用registerMBeans
+     */
+    HandlerMetrics register(Handler handler) {
+        HandlerMetrics metrics = new HandlerMetrics(handler);
+        handlerMetrics.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * 把每个handler的指标注册为JMX MBean,同一个JVM中已有同名MBean(如部署了多个dispatcher)时跳过
+     */
+    void registerMBeans() {
+        if (!jmx) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (HandlerMetrics metrics : handlerMetrics) {
+            try {
+                //同一url按请求方法映射到多个handler时,以请求方法区分
+                String requestMethods = metrics.getRequestMethods();
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Handler,name=" + ObjectName.quote(metrics.getUrlPattern())
+                        + ("*".equals(requestMethods) ? "" : ",requestMethods=" + ObjectName.quote(requestMethods)));
+                server.registerMBean(metrics, name);
+                registered.add(name);
+            } catch (JMException e) {
+                logger.warn("cannot register MBean for " + metrics.getUrlPattern() + " : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 注销已注册的MBean
+     */
+    void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.warn("cannot unregister MBean " + name + " : " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * 找不到handler的请求
+     */
+    void notFound() {
+        notFound.increment();
+    }
+
+    /**
+     * @return 输出指标的url
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 内置handler：输出所有handler的指标
+     */
+    @MyResponseBody
+    public Map<String, Object> metrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("notFound", notFound.sum());
+        List<Map<String, Object>> handlers = new ArrayList<>(handlerMetrics.size());
+        for (HandlerMetrics metrics : handlerMetrics) {
+            handlers.add(metrics.toMap());
+        }
+        map.put("handlers", handlers);
+        if (responseCache != null) {
+            map.put("responseCache", responseCache.getStats());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,296 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * 在handlerExecutor中调用handler时使用的响应包装，handler仍然直接(流式)输出到被包装的响应
+ * 每次输出都与超时互斥(锁为AsyncResponse)：超时抢先结束请求后，输出流抛出IOException，writer和响应头的修改被忽略，
+ * 不会在AsyncContext.complete()之后(响应可能已被容器回收)继续写入
+ */
+class GuardedResponseWrapper extends HttpServletResponseWrapper {
+
+    private final AsyncResponse asyncResponse;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    GuardedResponseWrapper(HttpServletResponse response, AsyncResponse asyncResponse) {
+        super(response);
+        this.asyncResponse = asyncResponse;
+    }
+
+    //已超时时抛出IOException,由调用方在持有锁时调用
+    private void ensureOpen() throws IOException {
+        if (asyncResponse.isTimedOut()) {
+            throw new IOException("async request has timed out, response is closed");
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            if (outputStream == null) {
+                ServletOutputStream out = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.write(b);
+                        }
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.write(b, off, len);
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.flush();
+                        }
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        out.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            if (writer == null) {
+                Writer out = super.getWriter();
+                //PrintWriter吞掉IOException,超时后的输出被忽略
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(char[] cbuf, int off, int len) throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.write(cbuf, off, len);
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.flush();
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        synchronized (asyncResponse) {
+                            ensureOpen();
+                            out.close();
+                        }
+                    }
+                });
+            }
+            return writer;
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            super.sendError(sc, msg);
+        }
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            super.sendError(sc);
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        synchronized (asyncResponse) {
+            ensureOpen();
+            super.sendRedirect(location);
+        }
+    }
+
+    //以下修改响应头的方法在超时后直接忽略
+
+    @Override
+    public void setStatus(int sc) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setStatus(sc);
+            }
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.addHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setDateHeader(name, date);
+            }
+        }
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.addDateHeader(name, date);
+            }
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setIntHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.addIntHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.addCookie(cookie);
+            }
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setContentType(type);
+            }
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setContentLength(len);
+            }
+        }
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setContentLengthLong(len);
+            }
+        }
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setCharacterEncoding(charset);
+            }
+        }
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setLocale(loc);
+            }
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.setBufferSize(size);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.reset();
+            }
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        synchronized (asyncResponse) {
+            if (!asyncResponse.isTimedOut()) {
+                super.resetBuffer();
+            }
+        }
+    }
+}
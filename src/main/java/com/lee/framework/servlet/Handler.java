@@ -1,18 +1,76 @@
 package com.lee.framework.servlet;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.lee.framework.annotation.MyCacheable;
+import com.lee.framework.annotation.MyResponseBody;
 import lombok.Getter;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
-@AllArgsConstructor
 @Getter
 public class Handler {
-    // ioc容器中controller的bean对象
+    // ioc容器中controller的bean对象,prototype/request作用域的controller为null
     protected Object controller;
+    // prototype/request作用域的controller每次请求从容器中获取,singleton为null
+    protected Supplier<Object> controllerFactory;
+    // controller的类,用于查找controller中的@MyExceptionHandler方法
+    protected Class<?> controllerClass;
     // 该controller的handler方法对象
     protected Method method;
-    // 存储此handler对应的urlPattern
+    // 存储此handler对应的urlPattern,url模板时为与模板等价的正则
     protected Pattern urlPattern;
-}
\ No newline at end of file
+    // url中含"{变量名}"时为编译后的url模板,否则为null
+    protected PathTemplate pathTemplate;
+    // 请求方法、Content-Type、Accept等匹配条件,没有条件时为null
+    protected RequestCondition condition;
+    // handler方法的参数类型,启动时缓存,避免每次请求调用getParameterTypes()复制数组
+    protected Class<?>[] parameterTypes;
+    // handler方法是否返回视图 MyModelAndView
+    protected boolean returnModelAndView;
+    // handler方法是否标注了@MyResponseBody,是则把返回值序列化为JSON输出
+    protected boolean responseBody;
+    // handler方法是否返回CompletableFuture等CompletionStage,是则异步完成响应
+    protected boolean asyncResult;
+    // 调用此handler方法的调用器,启动时创建
+    protected HandlerInvoker invoker;
+    // @MyConcurrencyLimit限制的同时处理的请求数,为null时不限制
+    protected Semaphore concurrencyLimit;
+    // 在handlerMapping中的序号,区分同一url的不同handler(如响应缓存的key)
+    protected int id;
+    // 标注的@MyCacheable,为null时不缓存响应
+    protected MyCacheable cacheable;
+    // 此handler的指标,没有开启metrics时为null
+    protected HandlerMetrics metrics;
+    // 拦截此handler的拦截器,按执行顺序排列,没有拦截器时为null
+    protected HandlerInterceptor[] interceptors;
+    // 与interceptors下标对应,启动时不能确定是否拦截的拦截器在请求时按请求路径匹配,其他为null;都已确定时为null
+    protected InterceptorChain.PathMatcher[] interceptorMatchers;
+
+    /**
+     * @return 处理本次请求的controller对象
+     */
+    public Object getController() {
+        return controllerFactory == null ? controller : controllerFactory.get();
+    }
+
+    /**
+     * @return 映射的url：url模板或url正则
+     */
+    public String getMapping() {
+        return pathTemplate != null ? pathTemplate.getTemplate() : urlPattern.pattern();
+    }
+
+    public Handler(Object controller, Method method, Pattern urlPattern) {
+        this.controller = controller;
+        this.controllerClass = controller == null ? null : controller.getClass();
+        this.method = method;
+        this.urlPattern = urlPattern;
+        this.parameterTypes = method.getParameterTypes();
+        this.returnModelAndView = method.getReturnType() == MyModelAndView.class;
+        this.responseBody = method.isAnnotationPresent(MyResponseBody.class);
+        this.asyncResult = CompletionStage.class.isAssignableFrom(method.getReturnType());
+        this.invoker = HandlerInvoker.create(method);
+    }
+}
@@ -0,0 +1,18 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 异常解析器，把handler抛出的异常转换为响应
+ * dispatcher按顺序调用解析器链：@MyExceptionHandler方法 -> ioc容器中实现了此接口的bean -> 默认的解析器(总是能处理)
+ */
+public interface HandlerExceptionResolver {
+
+    /**
+     * @param handler 抛出异常的handler，还没有找到handler时为null
+     * @param ex      handler抛出的异常
+     * @return 是否已处理(已输出响应)，返回false时交给下一个解析器
+     */
+    boolean resolveException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Throwable ex) throws Exception;
+}
@@ -0,0 +1,82 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据application.properties创建执行handler的线程池
+ * handlerExecutor=none    : 在容器线程中执行(默认)
+ * handlerExecutor=virtual : 每个请求一个虚拟线程(JDK 21+)，JDK不支持时退化为fixed
+ * handlerExecutor=fixed   : 有界线程池，线程数handlerExecutor.threads，队列长度handlerExecutor.queueCapacity
+ */
+final class HandlerExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(HandlerExecutors.class);
+
+    //配置文件中的参数名
+    static final String HANDLER_EXECUTOR = "handlerExecutor";
+    static final String HANDLER_EXECUTOR_THREADS = "handlerExecutor.threads";
+    static final String HANDLER_EXECUTOR_QUEUE_CAPACITY = "handlerExecutor.queueCapacity";
+
+    private HandlerExecutors() {
+    }
+
+    /**
+     * @return 执行handler的线程池，在容器线程中执行时返回null
+     */
+    static ExecutorService create(Properties config) {
+        String type = config.getProperty(HANDLER_EXECUTOR, "none").trim();
+        if ("virtual".equalsIgnoreCase(type)) {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                logger.info("handlerExecutor: virtual threads");
+                return executor;
+            }
+            logger.warn("virtual threads require JDK 21+, fall back to fixed handlerExecutor");
+            type = "fixed";
+        }
+        if ("fixed".equalsIgnoreCase(type)) {
+            int threads = Integer.parseInt(config.getProperty(HANDLER_EXECUTOR_THREADS, "200").trim());
+            int queueCapacity = Integer.parseInt(config.getProperty(HANDLER_EXECUTOR_QUEUE_CAPACITY, "1000").trim());
+            logger.info("handlerExecutor: fixed, threads=" + threads + ", queueCapacity=" + queueCapacity);
+            //队列满时抛出RejectedExecutionException，由dispatcher返回503
+            return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory("handler-"));
+        }
+        return null;
+    }
+
+    //通过反射调用Executors.newVirtualThreadPerTaskExecutor()，兼容JDK 21以下的编译版本
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
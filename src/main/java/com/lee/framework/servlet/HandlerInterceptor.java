@@ -0,0 +1,37 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * handler拦截器，在handler前后执行鉴权、限流、计时等通用逻辑
+ * 实现此接口并标注@MyInterceptor即可注册为拦截器，由@MyInterceptor指定拦截的url和顺序；容器中实现了此接口的其他bean拦截所有handler
+ * 拦截的url在启动时与每个handler的urlPattern匹配，每个handler的拦截器固定为一个数组，请求时不再做url匹配
+ */
+public interface HandlerInterceptor {
+
+    /**
+     * 调用handler之前执行
+     *
+     * @return 是否继续处理请求，返回false时由拦截器自己输出响应
+     */
+    default boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Handler handler) throws Exception {
+        return true;
+    }
+
+    /**
+     * 调用handler之后、输出返回值之前执行，按相反的顺序调用
+     *
+     * @param result handler的返回值(异步handler为future完成的值)，如MyModelAndView，可以修改其中的model
+     */
+    default void postHandle(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object result) throws Exception {
+    }
+
+    /**
+     * 请求处理完成(已输出响应或出错)后执行，只对preHandle返回了true的拦截器按相反的顺序调用
+     *
+     * @param ex handler或输出响应时抛出的异常，没有异常时为null
+     */
+    default void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Handler handler, Exception ex) throws Exception {
+    }
+}
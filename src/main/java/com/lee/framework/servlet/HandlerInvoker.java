@@ -0,0 +1,89 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * 调用handler方法的策略，每个Handler在servlet启动时创建一个
+ * 优先使用MethodHandle直接调用，无法创建时退化为反射Method.invoke
+ * 两种策略都直接抛出handler方法自身抛出的异常(不包装为InvocationTargetException)
+ */
+public interface HandlerInvoker {
+
+    /**
+     * 调用handler方法
+     *
+     * @param controller controller的bean对象
+     * @param args       按顺序注入的所有参数值
+     * @return handler方法的返回值，void方法返回null
+     */
+    Object invoke(Object controller, Object[] args) throws Exception;
+
+    /**
+     * 为此handler方法创建调用器
+     */
+    static HandlerInvoker create(Method method) {
+        try {
+            return new MethodHandleInvoker(method);
+        } catch (Exception e) {
+            LoggerFactory.getLogger(HandlerInvoker.class)
+                    .warn("fall back to reflective invoke for " + method + " : " + e);
+            return new ReflectiveInvoker(method);
+        }
+    }
+
+    /**
+     * 通过MethodHandle调用
+     * 把(Controller, p1...pn)R的方法句柄适配为(Object, Object[])Object，调用时用invokeExact，避免反射的访问检查和参数数组复制
+     */
+    class MethodHandleInvoker implements HandlerInvoker {
+        private final MethodHandle handle;
+
+        MethodHandleInvoker(Method method) throws IllegalAccessException {
+            method.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflect(method);
+            this.handle = mh.asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            try {
+                return (Object) handle.invokeExact(controller, args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UndeclaredThrowableException(t);
+            }
+        }
+    }
+
+    /**
+     * 反射调用，作为兜底
+     */
+    class ReflectiveInvoker implements HandlerInvoker {
+        private final Method method;
+
+        ReflectiveInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            try {
+                return method.invoke(controller, args);
+            } catch (InvocationTargetException e) {
+                Throwable target = e.getTargetException();
+                if (target instanceof Exception) throw (Exception) target;
+                if (target instanceof Error) throw (Error) target;
+                throw e;
+            }
+        }
+    }
+}
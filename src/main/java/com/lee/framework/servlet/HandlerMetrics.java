@@ -0,0 +1,166 @@
+package com.lee.framework.servlet;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个handler的指标：各阶段耗时的直方图、正在处理的请求数、出错和被拒绝(503)的请求数
+ * 所有计数都是无锁的，记录时不分配对象
+ */
+public class HandlerMetrics implements HandlerMetricsMBean {
+
+    /**
+     * 请求处理的阶段
+     */
+    public enum Stage {
+        ROUTE,   //按url查找handler
+        BIND,    //绑定handler方法的参数
+        INVOKE,  //调用handler方法
+        RENDER,  //输出返回值：序列化JSON或渲染视图(非缓冲输出时包括写入响应)
+        WRITE,   //缓冲输出时生成ETag、压缩并写入响应(含命中响应缓存)
+        TOTAL    //整个请求，异步handler到future完成并输出响应为止
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Handler handler;
+    // 第ordinal个阶段的耗时直方图
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    // 正在处理的请求数
+    private final LongAdder inFlight = new LongAdder();
+    // 抛出异常的请求数
+    private final LongAdder errors = new LongAdder();
+    // 超出@MyConcurrencyLimit被拒绝的请求数
+    private final LongAdder rejected = new LongAdder();
+
+    public HandlerMetrics(Handler handler) {
+        this.handler = handler;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     */
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * 开始处理一个请求
+     */
+    public void begin() {
+        inFlight.increment();
+    }
+
+    /**
+     * 一个请求处理完毕
+     *
+     * @param startNanos 开始处理请求时的System.nanoTime()
+     * @param failed     是否抛出了异常
+     */
+    public void end(long startNanos, boolean failed) {
+        inFlight.decrement();
+        record(Stage.TOTAL, System.nanoTime() - startNanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 请求因超出并发限制被拒绝
+     */
+    public void reject() {
+        rejected.increment();
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return 此handler的所有指标，用于输出/metrics.json
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("urlPattern", getUrlPattern());
+        map.put("method", getMethod());
+        map.put("requestMethods", getRequestMethods());
+        map.put("inFlight", getInFlight());
+        map.put("errors", getErrors());
+        map.put("rejected", getRejected());
+        for (Stage stage : STAGES) {
+            LatencyHistogram.Snapshot snapshot = getHistogram(stage).snapshot();
+            //没有经过的阶段不输出,如命中响应缓存时的bind/invoke
+            if (snapshot.getCount() > 0 || stage == Stage.TOTAL) {
+                map.put(stage.name().toLowerCase(Locale.ROOT), snapshot.toMap());
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String getUrlPattern() {
+        return handler.getMapping();
+    }
+
+    @Override
+    public String getMethod() {
+        return handler.method.getDeclaringClass().getName() + "." + handler.method.getName();
+    }
+
+    @Override
+    public String getRequestMethods() {
+        RequestCondition condition = handler.condition;
+        return condition == null || condition.getMethods().length == 0 ? "*" : String.join(",", condition.getMethods());
+    }
+
+    @Override
+    public long getRequests() {
+        return getHistogram(Stage.TOTAL).snapshot().getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return LatencyHistogram.Snapshot.millis(getHistogram(Stage.TOTAL).snapshot().getMeanNanos());
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis("total", 50);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis("total", 99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return LatencyHistogram.Snapshot.millis(getHistogram(Stage.TOTAL).snapshot().getMaxNanos());
+    }
+
+    @Override
+    public double percentileMillis(String stage, double percentile) {
+        Stage s = Stage.valueOf(stage.trim().toUpperCase(Locale.ROOT));
+        return LatencyHistogram.Snapshot.millis(getHistogram(s).snapshot().percentile(percentile));
+    }
+}
@@ -0,0 +1,37 @@
+package com.lee.framework.servlet;
+
+/**
+ * 通过JMX暴露的handler指标，ObjectName为com.lee.framework:type=Handler,name="urlPattern"，限制了请求方法时再加上requestMethods="GET,POST"
+ * 耗时单位为毫秒，均为整个请求的耗时，各阶段的耗时用percentileMillis查询
+ */
+public interface HandlerMetricsMBean {
+
+    String getUrlPattern();
+
+    String getMethod();
+
+    //限制的请求方法,以","分隔,不限制时为"*"
+    String getRequestMethods();
+
+    long getRequests();
+
+    long getErrors();
+
+    long getRejected();
+
+    long getInFlight();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /**
+     * @param stage      阶段名：route、bind、invoke、render、write、total
+     * @param percentile 百分位，如99表示p99
+     */
+    double percentileMillis(String stage, double percentile);
+}
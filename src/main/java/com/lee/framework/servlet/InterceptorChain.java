@@ -0,0 +1,105 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+
+/**
+ * 一次请求中handler的拦截器链，记录已执行过preHandle的拦截器，只有配置了拦截器的handler才创建
+ */
+final class InterceptorChain {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterceptorChain.class);
+
+    //请求属性名,值为按请求路径选出的本次请求的拦截器(HandlerInterceptor[]),只有handler.interceptorMatchers不为null时才设置
+    static final String INTERCEPTORS_ATTRIBUTE = InterceptorChain.class.getName() + ".interceptors";
+
+    private final Handler handler;
+    private final HandlerInterceptor[] interceptors;
+    //preHandle返回了true的拦截器个数
+    private int applied;
+
+    InterceptorChain(Handler handler, HttpServletRequest req) {
+        this.handler = handler;
+        HandlerInterceptor[] selected = handler.interceptorMatchers == null ? null
+                : (HandlerInterceptor[]) req.getAttribute(INTERCEPTORS_ATTRIBUTE);
+        //没有按请求路径选择过时执行所有可能拦截的拦截器,宁可多执行也不跳过鉴权等拦截器
+        this.interceptors = selected == null ? handler.interceptors : selected;
+    }
+
+    /**
+     * 按请求路径选出拦截本次请求的拦截器，在路由时调用(请求路径只在路由的线程上有效)
+     */
+    static HandlerInterceptor[] select(Handler handler, RequestPath path) {
+        HandlerInterceptor[] interceptors = handler.interceptors;
+        PathMatcher[] matchers = handler.interceptorMatchers;
+        HandlerInterceptor[] selected = new HandlerInterceptor[interceptors.length];
+        int n = 0;
+        for (int i = 0; i < interceptors.length; i++) {
+            if (matchers[i] == null || matchers[i].matches(path)) {
+                selected[n++] = interceptors[i];
+            }
+        }
+        return n == selected.length ? interceptors : Arrays.copyOf(selected, n);
+    }
+
+    /**
+     * 依次调用preHandle
+     *
+     * @return 是否继续处理请求,有拦截器返回false时为false
+     */
+    boolean applyPreHandle(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        for (; applied < interceptors.length; applied++) {
+            if (!interceptors[applied].preHandle(req, resp, handler)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按相反的顺序调用postHandle
+     */
+    void applyPostHandle(HttpServletRequest req, HttpServletResponse resp, Object result) throws Exception {
+        for (int i = interceptors.length - 1; i >= 0; i--) {
+            interceptors[i].postHandle(req, resp, handler, result);
+        }
+    }
+
+    /**
+     * 对preHandle返回了true的拦截器按相反的顺序调用afterCompletion,其中抛出的异常只记录日志
+     */
+    void triggerAfterCompletion(HttpServletRequest req, HttpServletResponse resp, Exception ex) {
+        for (int i = applied - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterCompletion(req, resp, handler, ex);
+            } catch (Exception e) {
+                logger.error("afterCompletion of " + interceptors[i].getClass().getName() + " failed", e);
+            }
+        }
+        applied = 0;
+    }
+
+    /**
+     * 启动时不能确定是否拦截某个handler的拦截器，请求时用拦截的url和不拦截的url的路由索引匹配规范化后的请求路径
+     */
+    static final class PathMatcher {
+
+        //拦截的url,为null时拦截所有url
+        private final RouteIndex<Boolean> include;
+        //不拦截的url,可以为null
+        private final RouteIndex<Boolean> exclude;
+
+        PathMatcher(RouteIndex<Boolean> include, RouteIndex<Boolean> exclude) {
+            this.include = include;
+            this.exclude = exclude;
+        }
+
+        boolean matches(RequestPath path) {
+            return (include == null || include.lookup(path) != null) && (exclude == null || exclude.lookup(path) == null);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.lee.framework.servlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图(与HdrHistogram相同的对数分桶)，记录一次只需一次原子自增，不加锁也不分配对象
+ * 每个2的幂区间再等分为16个桶，求出的百分位数相对误差不超过1/16
+ * 记录的单位为纳秒，最大到2^41纳秒(约36分钟)，更大的值记入最后一个桶
+ */
+public class LatencyHistogram {
+
+    //每个2的幂区间再等分的桶数 = 2^SUB_BITS
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    //最大的2的幂指数
+    private static final int MAX_EXPONENT = 40;
+    //桶数：[0, SUB_COUNT)每个值一个桶，之后每个2的幂区间SUB_COUNT个桶
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    //每个桶记录的次数
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    //所有记录值的和，用于求平均值
+    private final LongAdder totalNanos = new LongAdder();
+    //记录过的最大值
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时(纳秒)，负数按0记录
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return 当前的统计结果，与并发的记录之间不保证原子性
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), maxNanos.get());
+    }
+
+    //值所在的桶
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    //桶内的最大值
+    private static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int shift = exponent - SUB_BITS;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * 某一时刻的统计结果
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * @param percentile 百分位，如99表示p99
+         * @return 不小于percentile%的记录值的最小桶上界(纳秒)，没有记录时返回0
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * @return 次数、平均值、p50/p90/p99/p999、最大值，耗时单位为毫秒
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("meanMs", millis(getMeanNanos()));
+            map.put("p50Ms", millis(percentile(50)));
+            map.put("p90Ms", millis(percentile(90)));
+            map.put("p99Ms", millis(percentile(99)));
+            map.put("p999Ms", millis(percentile(99.9)));
+            map.put("maxMs", millis(maxNanos));
+            return map;
+        }
+
+        //纳秒转为毫秒，保留3位小数
+        static double millis(long nanos) {
+            return Math.round(nanos / 1000.0) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 映射到同一url(正则或模板)的所有handler，路由索引中的路由对象
+ * handler按条件的具体程度从高到低排列，请求时返回第一个条件匹配的handler；只有一个且没有条件的handler时直接返回
+ */
+final class MappingGroup {
+
+    private Handler[] handlers = new Handler[0];
+
+    /**
+     * @throws IllegalStateException 与已有handler的条件重叠，无法确定由哪个处理
+     */
+    void add(Handler handler) {
+        for (Handler existing : handlers) {
+            if (RequestCondition.overlaps(existing.condition, handler.condition)) {
+                throw new IllegalStateException("Ambiguous mapping: " + handler.getMapping() + " -> " + handler.method
+                        + " , already mapped to " + existing.method);
+            }
+        }
+        Handler[] added = Arrays.copyOf(handlers, handlers.length + 1);
+        int i = handlers.length;
+        //插入到具体程度更低的handler前面,相同的保持注册顺序
+        while (i > 0 && specificity(added[i - 1]) < specificity(handler)) {
+            added[i] = added[i - 1];
+            i--;
+        }
+        added[i] = handler;
+        handlers = added;
+    }
+
+    /**
+     * @return 处理此请求的handler，条件都不匹配返回null
+     */
+    Handler select(HttpServletRequest req) {
+        for (Handler handler : handlers) {
+            if (handler.condition == null || handler.condition.matches(req)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * url匹配但条件都不匹配时，按请求方法、Content-Type、Accept的顺序确定响应的状态码
+     */
+    ResponseStatusException mismatch(HttpServletRequest req) {
+        Set<String> allowed = new LinkedHashSet<>();
+        boolean methodMatched = false;
+        boolean consumesMatched = false;
+        for (Handler handler : handlers) {
+            RequestCondition condition = handler.condition;
+            if (!condition.matchesMethod(req.getMethod())) {
+                allowed.addAll(Arrays.asList(condition.getMethods()));
+                continue;
+            }
+            methodMatched = true;
+            if (condition.matchesConsumes(req)) {
+                consumesMatched = true;
+            }
+        }
+        if (!methodMatched) {
+            if (allowed.contains("GET")) {
+                allowed.add("HEAD");
+            }
+            return new ResponseStatusException(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method Not Allowed",
+                    String.join(", ", allowed));
+        }
+        if (!consumesMatched) {
+            return new ResponseStatusException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported Media Type");
+        }
+        return new ResponseStatusException(HttpServletResponse.SC_NOT_ACCEPTABLE, "Not Acceptable");
+    }
+
+    Handler[] getHandlers() {
+        return handlers;
+    }
+
+    private static int specificity(Handler handler) {
+        return handler.condition == null ? 0 : handler.condition.specificity();
+    }
+}
@@ -1,9 +1,25 @@
 package com.lee.framework.servlet;
 
+import com.lee.framework.annotation.MyCacheable;
+import com.lee.framework.annotation.MyConcurrencyLimit;
 import com.lee.framework.annotation.MyController;
+import com.lee.framework.annotation.MyControllerAdvice;
+import com.lee.framework.annotation.MyInterceptor;
+import com.lee.framework.annotation.MyPathVariable;
+import com.lee.framework.annotation.MyRequestBody;
 import com.lee.framework.annotation.MyRequestMapping;
 import com.lee.framework.annotation.MyRequestParam;
 import com.lee.framework.context.MyApplicationContext;
+import com.lee.framework.context.RequestContext;
+import com.lee.framework.json.Json;
+import com.lee.framework.servlet.bind.ArgumentResolver;
+import com.lee.framework.servlet.bind.BeanBinder;
+import com.lee.framework.servlet.bind.BeanParamResolver;
+import com.lee.framework.servlet.bind.Converter;
+import com.lee.framework.servlet.bind.ConverterRegistry;
+import com.lee.framework.servlet.bind.PathVariableResolver;
+import com.lee.framework.servlet.bind.RequestBodyResolver;
+import com.lee.framework.servlet.bind.RequestParamResolver;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,10 +30,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class MyDispatcherServlet extends HttpServlet {
 
@@ -27,16 +55,77 @@ public class MyDispatcherServlet extends HttpServlet {
     private static final String CONTEXT_CONFIG_LOCATION = "contextConfigLocation";
     //配置文件中 放置html模板页面的目录 的参数名
     private static final String TEMPLATE_ROOT = "templateRoot";
+    //配置文件中 异步请求超时时间(毫秒) 的参数名
+    private static final String ASYNC_TIMEOUT = "asyncTimeout";
+    //配置文件中 是否流式输出视图 的参数名
+    private static final String VIEW_STREAMING = "viewStreaming";
+    //配置文件中 流式输出视图时每输出多少字节flush一次 的参数名
+    private static final String VIEW_FLUSH_BYTES = "viewFlushBytes";
+    //配置文件中 响应缓存最多缓存的字节数(0表示不缓存) 的参数名
+    private static final String RESPONSE_CACHE_MAX_BYTES = "responseCache.maxBytes";
+    //配置文件中 路由前是否去除请求路径中的"."和".."路径段 的参数名
+    private static final String PATH_REMOVE_DOT_SEGMENTS = "path.removeDotSegments";
+    //配置文件中 路由前是否对请求路径做百分号解码 的参数名
+    private static final String PATH_DECODE = "path.decode";
+    //配置文件中 @MyRequestBody请求体的最大字节数(0表示不限制) 的参数名
+    private static final String REQUEST_BODY_MAX_BYTES = "requestBody.maxBytes";
 
     //    private Map<Pattern, Handler> handlerMapping = new HashMap<>();
     // 存储(支持正则的)urlPattern与handler的映射关系 ,与spring一样的数据结构
     private List<Handler> handlerMapping = new ArrayList<>();
 
+    // 每个线程复用的请求路径缓冲区,规范化请求路径时不创建新的字符串
+    private final ThreadLocal<RequestPath> requestPaths = ThreadLocal.withInitial(RequestPath::new);
+    // 规范化请求路径时是否去除"."和".."路径段、是否百分号解码
+    private boolean removeDotSegments;
+    private boolean decodePath;
+
+    // 由handlerMapping构建的路由索引,请求时按路径段查找handler,避免逐个正则匹配;同一url映射的handler按请求条件分组
+    private RouteIndex<MappingGroup> handlerIndex = new RouteIndex<>();
+
     // 保存处理这个handler的adapter
     private Map<Handler, HandlerAdapter> handlerAdapterMapping = new HashMap<>();
 
-    //存储所有视图的视图名和对应的模板文件
-    private List<ViewResolver> viewResolvers = new ArrayList<>();
+    // 请求参数的类型转换器
+    private ConverterRegistry converterRegistry = new ConverterRegistry();
+
+    // @MyRequestBody请求体的最大字节数,超过时返回413,0表示不限制
+    private long requestBodyMaxBytes = 1024 * 1024;
+
+    // 异步请求的超时时间(毫秒)
+    private long asyncTimeout = 30000;
+
+    // 是否有prototype/request作用域的bean,有则每个请求绑定一个RequestContext
+    private boolean requestScope;
+
+    // 执行handler的线程池(如虚拟线程),为null时在容器线程中执行
+    private ExecutorService handlerExecutor;
+
+    // 是否流式输出视图,及每输出多少字节flush一次(0表示只在模板的刷新点flush)
+    private boolean viewStreaming;
+    private int viewFlushBytes;
+
+    //存储所有视图的视图名和对应的模板文件,按视图名一次查找
+    private ViewRegistry viewRegistry;
+
+    // 在后台重新编译被修改的模板,为null时不监听模板目录
+    private TemplateWatcher templateWatcher;
+
+    // 标注了@MyCacheable的GET请求的响应缓存,为null时不缓存
+    private ResponseCache responseCache;
+
+    // 生成ETag和压缩响应体
+    private ResponseEncoder responseEncoder;
+
+    // 每个handler各阶段的耗时等指标,为null时不统计
+    private DispatcherMetrics metrics;
+
+    // 静态资源处理器,为null时不处理静态资源
+    private StaticResourceHandler staticResources;
+
+    // 异常解析器链,都不处理时交给defaultExceptionResolver
+    private List<HandlerExceptionResolver> exceptionResolvers = new ArrayList<>();
+    private DefaultExceptionResolver defaultExceptionResolver = new DefaultExceptionResolver(new Properties());
 
     /**
      * 初始化自己的ioc容器
@@ -45,6 +134,27 @@ public class MyDispatcherServlet extends HttpServlet {
     public void init(ServletConfig config) throws ServletException {
         //1、从web.xml读取初始化ioc容器的配置文件的位置,初始化ioc容器,spring是注入的,此处简化为new
         MyApplicationContext context = new MyApplicationContext(config.getInitParameter(CONTEXT_CONFIG_LOCATION));
+        asyncTimeout = Long.parseLong(context.getConfig().getProperty(ASYNC_TIMEOUT, String.valueOf(asyncTimeout)));
+        handlerExecutor = HandlerExecutors.create(context.getConfig());
+        requestScope = context.hasScopedBeans();
+        responseEncoder = new ResponseEncoder(context.getConfig());
+        removeDotSegments = Boolean.parseBoolean(context.getConfig().getProperty(PATH_REMOVE_DOT_SEGMENTS, "false").trim());
+        decodePath = Boolean.parseBoolean(context.getConfig().getProperty(PATH_DECODE, "false").trim());
+        requestBodyMaxBytes = Long.parseLong(context.getConfig()
+                .getProperty(REQUEST_BODY_MAX_BYTES, String.valueOf(requestBodyMaxBytes)).trim());
+        long cacheMaxBytes = Long.parseLong(context.getConfig().getProperty(RESPONSE_CACHE_MAX_BYTES, "0").trim());
+        if (cacheMaxBytes > 0) {
+            responseCache = new ResponseCache(cacheMaxBytes);
+            //放入ServletContext,业务代码可以通过它按url前缀使缓存失效
+            if (config.getServletContext() != null) {
+                config.getServletContext().setAttribute(ResponseCache.class.getName(), responseCache);
+            }
+        }
+        metrics = DispatcherMetrics.create(context.getConfig());
+        if (metrics != null) {
+            metrics.setResponseCache(responseCache);
+        }
+        staticResources = StaticResourceHandler.create(context.getConfig(), config.getServletContext());
 
         //解析请求 是否复合请求
         initMultipartResolver(context);
@@ -55,6 +165,7 @@ public class MyDispatcherServlet extends HttpServlet {
 //========================关键============================
         initHandlerMappings(context);  //解析url和handler方法的映射关系
         initHandlerAdapters(context);  //适配器（url与映射关系handlerMapping匹配的过程）
+        initHandlerInterceptors(context);  //拦截器（启动时为每个handler确定拦截器链）
 //========================关键============================
 
         //异常解析
@@ -68,6 +179,19 @@ public class MyDispatcherServlet extends HttpServlet {
         logger.info("MySpringMVC初始化成功...");
     }
 
+    @Override
+    public void destroy() {
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+        if (metrics != null) {
+            metrics.unregisterMBeans();
+        }
+        if (templateWatcher != null) {
+            templateWatcher.close();
+        }
+    }
+
     /**
      * 在此调用自己写的controller方法
      */
@@ -77,8 +201,50 @@ public class MyDispatcherServlet extends HttpServlet {
         try {
             doDispatcher(req, resp);
         } catch (Exception e) {
-            resp.getWriter().write("500 Exception : " + Arrays.toString(e.getStackTrace()));
+            processException(req, resp, null, e);
+        }
+    }
+
+    /**
+     * 按顺序调用异常解析器链,把异常转换为响应
+     * 响应已提交(已开始发送给客户端)时无法再输出,只记录日志
+     *
+     * @param handler 抛出异常的handler,还没有找到handler时为null
+     */
+    private void processException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Throwable e) throws IOException {
+        processException(req, resp, handler, null, e);
+    }
+
+    /**
+     * @param controller 抛出异常的controller实例,controller中的@MyExceptionHandler方法在此实例上调用,还没有调用handler时为null
+     */
+    private void processException(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object controller,
+                                  Throwable e) throws IOException {
+        //已由invokeHandler解析过(已输出响应)
+        if (e instanceof ResolvedException) {
+            return;
+        }
+        if (resp.isCommitted()) {
+            defaultExceptionResolver.log(req, e);
+            return;
+        }
+        //丢弃handler已输出但还未发送的内容
+        resp.resetBuffer();
+        for (HandlerExceptionResolver resolver : exceptionResolvers) {
+            try {
+                boolean resolved = resolver instanceof AnnotationExceptionResolver
+                        ? ((AnnotationExceptionResolver) resolver).resolveException(req, resp, handler, controller, e)
+                        : resolver.resolveException(req, resp, handler, e);
+                if (resolved) {
+                    return;
+                }
+            } catch (Exception resolveException) {
+                //异常处理方法本身出错,交给默认的解析器处理原来的异常
+                defaultExceptionResolver.log(req, resolveException);
+                break;
+            }
         }
+        defaultExceptionResolver.resolveException(req, resp, handler, e);
     }
 
 
@@ -88,6 +254,30 @@ public class MyDispatcherServlet extends HttpServlet {
         doPost(req, resp);
     }
 
+    //请求方法由handler的@MyRequestMapping(method)匹配,都交给doPost分发
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        doPost(req, resp);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        doPost(req, resp);
+    }
+
+    //静态资源请求直接由staticResources处理,不经过路由和反射调用;HttpServlet不支持PATCH(返回501)
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (staticResources != null && staticResources.handle(req, resp)) {
+            return;
+        }
+        if ("PATCH".equals(req.getMethod())) {
+            doPost(req, resp);
+        } else {
+            super.service(req, resp);
+        }
+    }
+
 
     //解析请求 是否复合请求
     public void initMultipartResolver(MyApplicationContext context) {
@@ -105,90 +295,337 @@ public class MyDispatcherServlet extends HttpServlet {
 
     //解析url和handler方法的映射关系
     public void initHandlerMappings(MyApplicationContext context) {
-        Map<String, Object> ioc = context.getAll();
-        // 若容器为空直接返回
-        if (ioc.isEmpty()) {
-            return;
-        }
-        // 遍历ioc容器  key:beanId , value:bean
-        ioc.forEach((beanId, bean) -> {
-            Class<?> clazz = bean.getClass();
+        // 遍历所有bean的定义,prototype/request作用域的controller不在ioc容器中
+        context.getBeanDefinitions().forEach(beanDefinition -> {
+            Class<?> clazz = beanDefinition.getBeanClass();
             // 若不是Controller则返回
             if (!clazz.isAnnotationPresent(MyController.class)) {
                 return;
             }
             //--------是controller--------
+            String beanId = beanDefinition.getBeanIds()[0];
+            //singleton直接持有bean对象,否则每次请求从容器中获取
+            Object bean = beanDefinition.isSingleton() ? context.getBean(beanId) : null;
             String baseUrl = "";
+            //controller上的@MyRequestMapping,其请求条件作为handler方法的默认条件
+            MyRequestMapping typeMapping = clazz.getAnnotation(MyRequestMapping.class);
             // 若标注了@MyRequestMapping
-            if (clazz.isAnnotationPresent(MyRequestMapping.class)) {
+            if (typeMapping != null) {
                 //controller级别的url前缀
-                baseUrl = clazz.getAnnotation(MyRequestMapping.class).value();
+                baseUrl = typeMapping.value();
             }
 
             //遍历每个handler方法,求出对应的映射路径mappingUrl
             for (Method method : clazz.getMethods()) {
                 // 若标注了@MyRequestMapping
                 if (method.isAnnotationPresent(MyRequestMapping.class)) {
-                    String mappingUrl = baseUrl + method.getAnnotation(MyRequestMapping.class).value();
+                    MyRequestMapping methodMapping = method.getAnnotation(MyRequestMapping.class);
+                    String mappingUrl = baseUrl + methodMapping.value();
                     // 增加urlMapping正则表达式的支持
                     String regex = mappingUrl.replaceAll("/+", "/");//去除连续(重复)的|"/"
-                    Pattern urlPattern = Pattern.compile(regex);  //编译为正则
+                    //含"{变量名}"的是url模板,启动时编译为按偏移量截取变量的模板,不使用正则
+                    PathTemplate pathTemplate = PathTemplate.isTemplate(regex) ? PathTemplate.compile(regex) : null;
+                    Pattern urlPattern = Pattern.compile(pathTemplate == null ? regex : pathTemplate.toRegex());  //编译为正则
 
 
-                    handlerMapping.add(new Handler(bean, method, urlPattern));
-                    logger.info("urlMapping: " + regex + " -> " + method.toString());
+                    Handler handler = new Handler(bean, method, urlPattern);
+                    handler.controllerClass = clazz;
+                    handler.pathTemplate = pathTemplate;
+                    handler.condition = RequestCondition.of(typeMapping, methodMapping);
+                    if (!beanDefinition.isSingleton()) {
+                        handler.controllerFactory = () -> context.getBean(beanId);
+                    }
+                    //方法上的并发限制优先于controller上的
+                    MyConcurrencyLimit limit = method.isAnnotationPresent(MyConcurrencyLimit.class)
+                            ? method.getAnnotation(MyConcurrencyLimit.class) : clazz.getAnnotation(MyConcurrencyLimit.class);
+                    if (limit != null) {
+                        handler.concurrencyLimit = new Semaphore(limit.value());
+                    }
+                    //异步handler的响应在future完成时才输出,不缓存
+                    if (method.isAnnotationPresent(MyCacheable.class)) {
+                        if (handler.asyncResult) {
+                            logger.warn("@MyCacheable is ignored on async handler " + method);
+                        } else {
+                            handler.cacheable = method.getAnnotation(MyCacheable.class);
+                        }
+                    }
+                    registerHandler(regex, handler);
+                    logger.info("urlMapping: " + regex + (handler.condition == null ? "" : " {" + handler.condition + "}")
+                            + " -> " + method.toString());
                 }
             }
         });
 
+        initMetrics();
     }
 
-    //初始化适配器（保存handler的参数信息）
+    /**
+     * 注册url正则(或url模板)与handler的映射关系
+     * 同一个urlPattern映射到多个请求条件重叠的handler,启动时报错,而不是请求时随机选一个
+     */
+    void registerHandler(String regex, Handler handler) {
+        MappingGroup group = new MappingGroup();
+        MappingGroup existing = handlerIndex.register(regex, group);
+        (existing != null ? existing : group).add(handler);
+        handler.id = handlerMapping.size();
+        handlerMapping.add(handler);
+    }
+
+    //注册输出指标的内置handler,并为每个handler创建指标
+    private void initMetrics() {
+        if (metrics == null) {
+            return;
+        }
+        String regex = metrics.getPath().replace(".", "\\.");
+        Handler metricsHandler;
+        try {
+            metricsHandler = new Handler(metrics, DispatcherMetrics.class.getMethod("metrics"), Pattern.compile(regex));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        registerHandler(regex, metricsHandler);
+        for (Handler handler : handlerMapping) {
+            handler.metrics = metrics.register(handler);
+        }
+        metrics.registerMBeans();
+    }
+
+    //初始化适配器（为每个handler预先生成参数绑定计划）
     public void initHandlerAdapters(MyApplicationContext context) {
         if (handlerMapping.isEmpty()) {
             return;
         }
-        //记录handler方法的参数信息, key：参数名称  value：方法中参数所在的index
-        Map<String, Integer> paramMapping = new HashMap<>();
-        //遍历获取每个handler方法上的所有参数
-        handlerMapping.forEach(handler -> {
-            //1、第一个for循环遍历每个参数的class,处理HttpServletRequest和HttpServletResponse等默认注入的参数
-            Class<?>[] parameterTypes = handler.method.getParameterTypes();
-            for (int i = 0; i < parameterTypes.length; i++) {
-//                System.out.println("parameterTypes:" + i + parameterTypes[i]);
-                Class<?> parameterType = parameterTypes[i];
-                if (parameterType == HttpServletRequest.class || parameterType == HttpServletResponse.class) {
-                    //记录第index个参数的class
-                    paramMapping.put(parameterType.getName(), i);
+        //注册ioc容器中自定义的类型转换器
+        context.getAll().values().forEach(this::registerConverter);
+
+        //保存处理每个handler的adapter
+        handlerMapping.forEach(handler -> handlerAdapterMapping.put(handler, createHandlerAdapter(handler)));
+
+    }
+
+    /**
+     * 为每个handler确定拦截器链：ioc容器中实现了HandlerInterceptor的bean,按@MyInterceptor的order排序
+     * 拦截器匹配的是请求路径,能在启动时确定的在启动时确定,请求时不再匹配：
+     * 1、handler的url是字面量时,它只处理这一个url,直接用拦截的url和不拦截的url的路由索引查找
+     * 2、拦截的(不拦截的)url覆盖了handler的url正则能匹配的所有url,或两者的字面量前缀不可能匹配同一个url
+     * 其他情况(如"/user/[0-9]+"与"/user/{id}")在请求时用路由索引匹配规范化后的请求路径,并在启动时输出警告
+     * 没有拦截器的handler,interceptors为null
+     */
+    public void initHandlerInterceptors(MyApplicationContext context) {
+        List<HandlerInterceptor> interceptors = context.getAll().values().stream().distinct()
+                .filter(bean -> bean instanceof HandlerInterceptor)
+                .map(bean -> (HandlerInterceptor) bean)
+                .sorted(Comparator.comparingInt(MyDispatcherServlet::interceptorOrder))
+                .collect(Collectors.toList());
+        if (interceptors.isEmpty()) {
+            return;
+        }
+        // key：拦截器  value：拦截的url(规范化后),为null时拦截所有handler
+        Map<HandlerInterceptor, String[]> includes = new HashMap<>();
+        // key：拦截器  value：不拦截的url(规范化后)
+        Map<HandlerInterceptor, String[]> excludes = new HashMap<>();
+        for (HandlerInterceptor interceptor : interceptors) {
+            MyInterceptor annotation = interceptor.getClass().getAnnotation(MyInterceptor.class);
+            if (annotation == null) {
+                continue;
+            }
+            if (annotation.value().length > 0) {
+                includes.put(interceptor, normalizePatterns(annotation.value()));
+            }
+            if (annotation.exclude().length > 0) {
+                excludes.put(interceptor, normalizePatterns(annotation.exclude()));
+            }
+            logger.info("interceptor: " + interceptor.getClass().getName());
+        }
+        // key：拦截的(不拦截的)url  value：其路由索引,请求时匹配用
+        Map<String[], RouteIndex<Boolean>> indexes = new IdentityHashMap<>();
+        for (Handler handler : handlerMapping) {
+            String mapping = handler.getMapping();
+            List<HandlerInterceptor> matched = new ArrayList<>();
+            List<InterceptorChain.PathMatcher> matchers = new ArrayList<>();
+            boolean conditional = false;
+            for (HandlerInterceptor interceptor : interceptors) {
+                String[] include = includes.get(interceptor);
+                String[] exclude = excludes.get(interceptor);
+                //TRUE/FALSE：handler处理的所有请求都匹配/都不匹配,null：取决于请求路径
+                Boolean included = include == null ? Boolean.TRUE : matchAll(include, mapping, indexes);
+                Boolean excluded = exclude == null ? Boolean.FALSE : matchAll(exclude, mapping, indexes);
+                if (Boolean.FALSE.equals(included) || Boolean.TRUE.equals(excluded)) {
+                    continue;
+                }
+                matched.add(interceptor);
+                if (included != null && excluded != null) {
+                    matchers.add(null);
+                    continue;
                 }
+                logger.warn("interceptor " + interceptor.getClass().getName() + " cannot be matched with the mapping "
+                        + mapping + " of " + handler.method + " at startup, matching request paths at runtime");
+                matchers.add(new InterceptorChain.PathMatcher(include == null ? null : indexes.get(include),
+                        exclude == null ? null : indexes.get(exclude)));
+                conditional = true;
             }
-            //2、第二个for循环记录第index个参数的注解指定的paramName
-            Annotation[][] parameterAnnotations = handler.method.getParameterAnnotations();
-            //循环每个参数
-            for (int i = 0; i < parameterAnnotations.length; i++) {
-//                System.out.println("parameterAnnotations:" + i + parameterAnnotations[i]);
-                //循当前参数的每个注解
-                for (Annotation annotation : parameterAnnotations[i]) {
-                    //若是其实例,则转型
-                    if (annotation instanceof MyRequestParam) {
-                        String paramName = ((MyRequestParam) annotation).value();
-                        //记录第index个参数的注解指定的paramName
-                        if (StringUtils.isNotBlank(paramName)) {
-                            paramMapping.put(paramName, i);
+            handler.interceptors = matched.isEmpty() ? null : matched.toArray(new HandlerInterceptor[0]);
+            handler.interceptorMatchers = conditional ? matchers.toArray(new InterceptorChain.PathMatcher[0]) : null;
+        }
+    }
+
+    /**
+     * 启动时判断url正则是否匹配handler处理的所有请求
+     *
+     * @param patterns 拦截的(不拦截的)url
+     * @param mapping  handler的url正则或url模板
+     * @return TRUE：都匹配  FALSE：都不匹配  null：不能在启动时确定,需要请求时匹配
+     */
+    private static Boolean matchAll(String[] patterns, String mapping, Map<String[], RouteIndex<Boolean>> indexes) {
+        RouteIndex<Boolean> index = indexes.computeIfAbsent(patterns, MyDispatcherServlet::routeIndex);
+        //字面量的handler只处理这一个url,直接查找
+        if (RouteIndex.isLiteral(mapping)) {
+            return index.lookup(RouteIndex.literalPrefix(mapping)) != null;
+        }
+        boolean undecided = false;
+        for (String pattern : patterns) {
+            if (RouteIndex.covers(pattern, mapping)) {
+                return Boolean.TRUE;
+            }
+            undecided |= !RouteIndex.disjoint(pattern, mapping);
+        }
+        return undecided ? null : Boolean.FALSE;
+    }
+
+    private static int interceptorOrder(HandlerInterceptor interceptor) {
+        MyInterceptor annotation = interceptor.getClass().getAnnotation(MyInterceptor.class);
+        return annotation == null ? 0 : annotation.order();
+    }
+
+    //与@MyRequestMapping相同:以"/"开头,合并连续的"/"
+    private static String[] normalizePatterns(String[] regexes) {
+        String[] patterns = new String[regexes.length];
+        for (int i = 0; i < regexes.length; i++) {
+            patterns[i] = ("/" + regexes[i].trim()).replaceAll("/+", "/");
+        }
+        return patterns;
+    }
+
+    private static RouteIndex<Boolean> routeIndex(String[] patterns) {
+        RouteIndex<Boolean> index = new RouteIndex<>();
+        for (String pattern : patterns) {
+            index.register(pattern, Boolean.TRUE);
+        }
+        return index;
+    }
+
+    /**
+     * 为handler预先生成参数绑定计划
+     * 遍历获取handler方法上的所有参数,记录每个参数的解析器
+     */
+    HandlerAdapter createHandlerAdapter(Handler handler) {
+        Class<?>[] parameterTypes = handler.parameterTypes;
+        Type[] genericParameterTypes = handler.method.getGenericParameterTypes();
+        Annotation[][] parameterAnnotations = handler.method.getParameterAnnotations();
+        //第index个参数的解析器
+        ArgumentResolver[] argumentResolvers = new ArgumentResolver[parameterTypes.length];
+        // key：请求参数名  value：绑定此请求参数的参数index，用于检查重复绑定
+        Map<String, Integer> paramIndexes = new HashMap<>();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            //处理HttpServletRequest和HttpServletResponse等默认注入的参数
+            if (parameterType == HttpServletRequest.class) {
+                argumentResolvers[i] = ArgumentResolver.REQUEST;
+                continue;
+            }
+            if (parameterType == HttpServletResponse.class) {
+                argumentResolvers[i] = ArgumentResolver.RESPONSE;
+                continue;
+            }
+            //没有标注注解的POJO参数按属性名绑定请求参数,其他参数注入null
+            BeanBinder beanBinder = converterRegistry.getBeanBinder(parameterType);
+            argumentResolvers[i] = beanBinder == null ? ArgumentResolver.NULL : new BeanParamResolver(beanBinder);
+            //记录第index个参数的注解指定的paramName及转为参数类型的转换器
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof MyRequestBody) {
+                    //反序列化器按参数的泛型类型取得,不能反序列化的类型启动报错
+                    try {
+                        argumentResolvers[i] = new RequestBodyResolver(Json.deserializerFor(genericParameterTypes[i]),
+                                beanBinder, requestBodyMaxBytes, ((MyRequestBody) annotation).required());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalStateException("Invalid @MyRequestBody parameter of " + handler.method
+                                + " : " + e.getMessage(), e);
+                    }
+                }
+                if (annotation instanceof MyPathVariable) {
+                    String name = ((MyPathVariable) annotation).value().trim();
+                    int index = handler.pathTemplate == null ? -1 : handler.pathTemplate.indexOf(name);
+                    if (index < 0) {
+                        throw new IllegalStateException("No path variable {" + name + "} in mapping "
+                                + handler.getMapping() + " of " + handler.method);
+                    }
+                    argumentResolvers[i] = new PathVariableResolver(name, PathTemplate.VARIABLES_ATTRIBUTE, index,
+                            converterRegistry.getValueConverter(parameterType, genericParameterTypes[i]));
+                }
+                if (annotation instanceof MyRequestParam) {
+                    String paramName = ((MyRequestParam) annotation).value();
+                    if (StringUtils.isNotBlank(paramName)) {
+                        //同一个请求参数名绑定了多个参数时启动报错
+                        Integer bound = paramIndexes.putIfAbsent(paramName, i);
+                        if (bound != null) {
+                            throw new IllegalStateException("Invalid parameter mapping of " + handler.method
+                                    + " : request parameter '" + paramName + "' is bound to both parameter "
+                                    + bound + " and parameter " + i);
                         }
+                        argumentResolvers[i] = new RequestParamResolver(paramName,
+                                converterRegistry.getValueConverter(parameterType, genericParameterTypes[i]),
+                                ((MyRequestParam) annotation).required());
                     }
                 }
             }
-            //保存处理这个handler的adapter
-            handlerAdapterMapping.put(handler, new HandlerAdapter(paramMapping));
-        });
-
+        }
+        return new HandlerAdapter(argumentResolvers);
+    }
 
+    //若bean实现了Converter<T>接口,则注册为T类型的转换器
+    @SuppressWarnings("unchecked")
+    private void registerConverter(Object bean) {
+        if (!(bean instanceof Converter)) {
+            return;
+        }
+        for (Type type : bean.getClass().getGenericInterfaces()) {
+            if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == Converter.class) {
+                Type target = ((ParameterizedType) type).getActualTypeArguments()[0];
+                if (target instanceof Class) {
+                    converterRegistry.register((Class<Object>) target, (Converter<Object>) bean);
+                    logger.info("converter: " + ((Class<?>) target).getName() + " -> " + bean.getClass().getName());
+                }
+            }
+        }
     }
 
-    //异常解析
+    //异常解析：@MyExceptionHandler方法 -> ioc容器中的HandlerExceptionResolver -> 默认的解析器
     public void initHandlerExceptionResolvers(MyApplicationContext context) {
-
+        defaultExceptionResolver = new DefaultExceptionResolver(context.getConfig());
+        AnnotationExceptionResolver annotationResolver = new AnnotationExceptionResolver(this::processResult);
+        context.getBeanDefinitions().forEach(beanDefinition -> {
+            Class<?> clazz = beanDefinition.getBeanClass();
+            String beanId = beanDefinition.getBeanIds()[0];
+            if (clazz.isAnnotationPresent(MyControllerAdvice.class)) {
+                annotationResolver.registerAdvice(context.getBean(beanId));
+            } else if (clazz.isAnnotationPresent(MyController.class)) {
+                //controller中的异常处理方法与handler方法在同一个实例上调用
+                if (beanDefinition.isSingleton()) {
+                    annotationResolver.registerController(clazz, context.getBean(beanId), null);
+                } else {
+                    annotationResolver.registerController(clazz, null, () -> context.getBean(beanId));
+                }
+            }
+        });
+        if (!annotationResolver.isEmpty()) {
+            exceptionResolvers.add(annotationResolver);
+        }
+        context.getAll().values().stream().distinct()
+                .filter(bean -> bean instanceof HandlerExceptionResolver)
+                .forEach(bean -> {
+                    exceptionResolvers.add((HandlerExceptionResolver) bean);
+                    logger.info("exceptionResolver: " + bean.getClass().getName());
+                });
     }
 
     //根据视图名匹配一个具体视图解析器
@@ -200,13 +637,18 @@ public class MyDispatcherServlet extends HttpServlet {
     public void initViewResolvers(MyApplicationContext context) {
         //1、读取配置文件中模板的根目录
         String templateRoot = context.getConfig().getProperty(TEMPLATE_ROOT);
-        //2、递归读取根目录下的每一个模板文件
-        String rootPath = this.getClass().getClassLoader().getResource(templateRoot).getFile();
-        File rootDir = new File(rootPath);
-        for (File template : rootDir.listFiles()) {
-            //保存viewName(此处以模板文件名充当)和模版文件
-            viewResolvers.add(new ViewResolver(template.getName(), template));
+        viewStreaming = Boolean.parseBoolean(context.getConfig().getProperty(VIEW_STREAMING));
+        viewFlushBytes = Integer.parseInt(context.getConfig().getProperty(VIEW_FLUSH_BYTES, "0").trim());
+        viewRegistry = new ViewRegistry(context.getConfig());
+        //2、递归读取根目录下的每一个模板文件,绝对路径为文件系统中的目录(如开发时直接监听源码目录),否则为classpath中的目录
+        File rootDir = new File(templateRoot);
+        if (!rootDir.isAbsolute()) {
+            rootDir = new File(this.getClass().getClassLoader().getResource(templateRoot).getFile());
         }
+        //保存viewName(此处以模板文件相对根目录的路径充当)和编译后的模版
+        viewRegistry.load(rootDir);
+        //3、开启templateWatch时在后台监听模板的增加、修改、删除
+        templateWatcher = TemplateWatcher.start(context.getConfig(), rootDir, viewRegistry);
     }
 
     public void initFlashMapManager(MyApplicationContext context) {
@@ -218,52 +660,461 @@ public class MyDispatcherServlet extends HttpServlet {
      * 处理请求
      */
     public void doDispatcher(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        //开启了metrics时,记录开始处理请求的时间
+        long start = metrics == null ? 0 : System.nanoTime();
+        //1、 Determine handler for the current request.
+        Handler handler = getHandler(req); //找出处理该请求的handler方法
+        if (handler == null) {  //没找到此请求url的handler方法
+            if (metrics != null) {
+                metrics.notFound();
+            }
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            resp.getWriter().write("404 Not Found !");
+            return;
+        }
+        try {
+            dispatch(req, resp, handler, start);
+        } catch (Exception e) {
+            //交给异常解析器链,@MyExceptionHandler方法可以拿到抛出异常的handler
+            processException(req, resp, handler, e);
+        }
+    }
+
+    /**
+     * 调用handler处理请求
+     *
+     * @param start 开始处理请求的System.nanoTime(),没有开启metrics时为0
+     */
+    private void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler, long start) throws Exception {
+        HandlerMetrics handlerMetrics = handler.metrics;
+        if (handlerMetrics != null) {
+            handlerMetrics.record(HandlerMetrics.Stage.ROUTE, System.nanoTime() - start);
+        }
+        //2、 Determine handler adapter for the handler.
+        HandlerAdapter handlerAdapter = getHandlerAdapter(handler);
+
+        //GET请求需要缓存响应、生成ETag或压缩时,先把响应体完整渲染出来再输出
+        //开启viewStreaming时视图仍然边渲染边输出(viewFlushBytes、"@{!flush}"),只有需要缓存的视图才暂存
+        boolean buffered = "GET".equals(req.getMethod()) && !handler.asyncResult
+                && (handler.cacheable != null && responseCache != null
+                || responseEncoder.isEnabled() && !(viewStreaming && handler.returnModelAndView));
+        //标注了@MyCacheable的GET请求,命中缓存时直接输出,不再调用handler
+        String cacheKey = null;
+        if (buffered && handler.cacheable != null && responseCache != null) {
+            //getHandler已在本线程解析了请求路径(去掉项目名并规范化)
+            cacheKey = ResponseCache.key(req, requestPaths.get(), handler);
+            ResponseCache.CachedResponse cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                writeCached(req, resp, handler, cached, start);
+                return;
+            }
+        }
+
+        //保存本次请求的request作用域的bean,没有prototype/request作用域的bean时不创建
+        RequestContext requestContext = requestScope ? new RequestContext() : null;
+        String key = cacheKey;
+        //由输出的响应得到调用handler的任务,在handlerExecutor中执行时输出到与超时互斥的响应包装
+        Function<HttpServletResponse, Callable<Boolean>> task = response -> {
+            Callable<Boolean> invocation = buffered
+                    ? () -> invokeBuffered(req, response, handler, handlerAdapter, requestContext, key, start)
+                    : () -> invokeHandler(req, response, handler, handlerAdapter, requestContext, start);
+            return handlerMetrics == null ? invocation : () -> track(handlerMetrics, start, invocation);
+        };
+
+        //配置了handlerExecutor时,把handler交给线程池执行,释放容器线程
+        if (handlerExecutor != null && req.isAsyncSupported()) {
+            executeAsync(req, resp, handler, task);
+            return;
+        }
+
+        //3、 Actually invoke the handler.
+        task.apply(resp).call();
+    }
+
+    /**
+     * 输出缓存的响应,不调用handler
+     * 拦截器仍然执行preHandle和afterCompletion,避免鉴权等拦截器被缓存绕过
+     */
+    private void writeCached(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                             ResponseCache.CachedResponse cached, long start) throws Exception {
+        HandlerMetrics handlerMetrics = handler.metrics;
+        if (handlerMetrics == null && handler.interceptors == null) {
+            responseEncoder.write(req, resp, cached.getContentType(), cached.getBody(), null);
+            return;
+        }
+        InterceptorChain chain = handler.interceptors == null ? null : new InterceptorChain(handler, req);
+        if (handlerMetrics != null) {
+            handlerMetrics.begin();
+        }
+        long writeStart = System.nanoTime();
+        Exception failure = null;
+        boolean failed = true;
+        try {
+            if (chain == null || chain.applyPreHandle(req, resp)) {
+                responseEncoder.write(req, resp, cached.getContentType(), cached.getBody(), null);
+            }
+            failed = false;
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (chain != null) {
+                chain.triggerAfterCompletion(req, resp, failure);
+            }
+            if (handlerMetrics != null) {
+                handlerMetrics.record(HandlerMetrics.Stage.WRITE, System.nanoTime() - writeStart);
+                handlerMetrics.end(start, failed);
+            }
+        }
+    }
+
+    /**
+     * 统计一次请求：正在处理的请求数、整个请求的耗时及是否出错
+     * handler返回了未完成的异步结果时,由future完成时结束统计
+     *
+     * @param invocation 调用handler并输出响应
+     */
+    private boolean track(HandlerMetrics handlerMetrics, long start, Callable<Boolean> invocation) throws Exception {
+        handlerMetrics.begin();
+        boolean async = false;
+        boolean failed = true;
+        try {
+            async = invocation.call();
+            failed = false;
+            return async;
+        } finally {
+            if (!async) {
+                handlerMetrics.end(start, failed);
+            }
+        }
+    }
+
+    /**
+     * 调用handler并输出响应
+     *
+     * @param requestContext 在调用handler的线程上绑定的请求上下文,请求结束时关闭,可以为null
+     * @param start          开始处理请求的System.nanoTime(),没有开启metrics时为0
+     * @return handler是否返回了未完成的异步结果(由future完成时结束请求)
+     */
+    private boolean invokeHandler(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                                  HandlerAdapter handlerAdapter, RequestContext requestContext, long start) throws Exception {
+        //handler同时处理的请求数超出限制,直接返回503,避免一个慢接口占满所有线程
+        Semaphore concurrencyLimit = handler.concurrencyLimit;
+        if (concurrencyLimit != null && !concurrencyLimit.tryAcquire()) {
+            if (handler.metrics != null) {
+                handler.metrics.reject();
+            }
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.getWriter().write("503 Too Many Concurrent Requests");
+            return false;
+        }
+        boolean async = false;
+        //没有拦截器的handler不创建拦截器链
+        InterceptorChain chain = handler.interceptors == null ? null : new InterceptorChain(handler, req);
+        Exception failure = null;
+        RequestContext previous = requestContext == null ? null : RequestContext.bind(requestContext);
+        //处理本次请求的controller实例,prototype/request作用域时每个请求不同
+        Object controller = null;
         try {
-            //1、 Determine handler for the current request.
-            Handler handler = getHandler(req); //找出处理该请求的handler方法
-            if (handler == null) {  //没找到此请求url的handler方法
-                resp.getWriter().write("404 Not Found !");
+            if (chain != null && !chain.applyPreHandle(req, resp)) {
+                return false;
+            }
+            controller = handler.getController();
+            Object result = handlerAdapter.invoke(req, resp, handler, controller);
+            //handler返回CompletableFuture,等其完成后再输出响应
+            if (handler.asyncResult) {
+                CompletionStage<?> future = (CompletionStage<?>) result;
+                async = dispatchAsync(req, resp, handler, controller, future, requestContext, chain, start);
+                if (async && concurrencyLimit != null) {
+                    future.whenComplete((value, ex) -> concurrencyLimit.release());
+                }
+                return async;
             }
-            //2、 Determine handler adapter for the handler.
-            HandlerAdapter handlerAdapter = getHandlerAdapter(handler);
 
-            //3、 Actually invoke the handler.
-            MyModelAndView modelAndView = handlerAdapter.handle(req, resp, handler);
+            if (chain != null) {
+                chain.applyPostHandle(req, resp, result);
+            }
+            //4、输出返回值：解析视图，输出网页或JSON
+            processResult(req, resp, handler, result);
+            return false;
+        } catch (Exception e) {
+            failure = e;
+            //在请求上下文关闭前解析异常:request作用域的controller仍然可以获取,池化的controller还没有放回对象池,
+            //controller中的@MyExceptionHandler方法在抛出异常的同一个实例上调用;暂存响应体时直接输出到原来的响应
+            HttpServletResponse target = resp instanceof CachingResponseWrapper
+                    ? (HttpServletResponse) ((CachingResponseWrapper) resp).getResponse() : resp;
+            processException(req, target, handler, controller, e);
+            //抛出给外层,用于记录失败和跳过输出暂存的响应体
+            throw new ResolvedException(e);
+        } finally {
+            //异步结果由future完成时调用afterCompletion
+            if (chain != null && !async) {
+                chain.triggerAfterCompletion(req, resp, failure);
+            }
+            if (!async && concurrencyLimit != null) {
+                concurrencyLimit.release();
+            }
+            if (requestContext != null) {
+                RequestContext.restore(previous);
+                //异步结果由future完成时关闭
+                if (!async) {
+                    requestContext.close();
+                }
+            }
+        }
+    }
 
-            //4、解析视图，输出网页
-            applyDefaultViewName(resp, modelAndView);
+    /**
+     * 调用handler,把输出的响应体暂存下来,完整渲染后再生成ETag、压缩并输出
+     * 只有200的响应才放入响应缓存
+     *
+     * @param cacheKey 响应缓存的key,不缓存时为null
+     * @return 总是false,异步handler不使用此方式
+     */
+    private boolean invokeBuffered(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                                   HandlerAdapter handlerAdapter, RequestContext requestContext, String cacheKey,
+                                   long start) throws Exception {
+        CachingResponseWrapper wrapper = new CachingResponseWrapper(resp, responseEncoder.getMaxBufferBytes());
+        invokeHandler(req, wrapper, handler, handlerAdapter, requestContext, start);
+        long writeStart = handler.metrics == null ? 0 : System.nanoTime();
+        try {
+            writeBuffered(req, resp, handler, wrapper, cacheKey);
+        } finally {
+            if (handler.metrics != null) {
+                handler.metrics.record(HandlerMetrics.Stage.WRITE, System.nanoTime() - writeStart);
+            }
+        }
+        return false;
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    //输出暂存的响应体,200的响应放入响应缓存
+    private void writeBuffered(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                               CachingResponseWrapper wrapper, String cacheKey) throws IOException {
+        byte[] body = wrapper.toByteArray();
+        //超过compression.maxBufferBytes,已经直接输出
+        if (body == null) {
+            return;
+        }
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK) {
+            wrapper.copyBodyToResponse(body);
+            return;
+        }
+        if (cacheKey != null) {
+            responseCache.put(cacheKey, wrapper.getContentType(), body, handler.cacheable.ttl());
         }
+        responseEncoder.write(req, resp, wrapper.getContentType(), body, wrapper.getEtag());
+    }
 
+    /**
+     * @return 响应缓存,没有配置responseCache.maxBytes时为null
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return 所有视图的注册表,initViewResolvers之前为null
+     */
+    ViewRegistry getViewRegistry() {
+        return viewRegistry;
+    }
+
+    /**
+     * 在handlerExecutor中调用handler(如虚拟线程),容器线程立即返回
+     * handler通过GuardedResponseWrapper输出,超时结束请求后不能再写入响应,并取消handler的执行
+     *
+     * @param task 调用handler并输出响应,返回handler是否返回了未完成的异步结果
+     */
+    private void executeAsync(HttpServletRequest req, HttpServletResponse resp, Handler handler,
+                              Function<HttpServletResponse, Callable<Boolean>> task) throws IOException {
+        AsyncResponse asyncResponse = AsyncResponse.start(req, resp, asyncTimeout);
+        HttpServletResponse guarded = new GuardedResponseWrapper(resp, asyncResponse);
+        Callable<Boolean> invocation = task.apply(guarded);
+        try {
+            asyncResponse.setTask(handlerExecutor.submit(() -> {
+                boolean async = false;
+                try {
+                    async = invocation.call();
+                } catch (Exception e) {
+                    //已超时:响应已经结束,handler的输出被拒绝或被中断
+                    if (asyncResponse.isTimedOut()) {
+                        logger.debug("async handler " + handler.method + " aborted by timeout : " + e);
+                        return;
+                    }
+                    try {
+                        processException(req, guarded, handler, e);
+                    } catch (IOException ioe) {
+                        logger.error("async dispatch failed", ioe);
+                    }
+                } finally {
+                    //handler返回了异步结果时,由future完成时结束请求
+                    if (!async && asyncResponse.tryComplete()) {
+                        asyncResponse.complete();
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            //线程池队列已满
+            if (asyncResponse.tryComplete()) {
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.getWriter().write("503 Handler Executor Busy");
+                asyncResponse.complete();
+            }
+        }
+    }
+
+    /**
+     * 异步处理：释放容器线程,在handler返回的future完成时输出响应并结束请求
+     * 容器不支持异步时(未配置async-supported)退化为阻塞等待
+     *
+     * @param controller     调用handler的controller实例,future异常完成时在此实例上调用@MyExceptionHandler方法
+     * @param requestContext 返回true时由future完成时关闭,可以为null
+     * @param chain          handler的拦截器链,返回true时由future完成时调用postHandle和afterCompletion,可以为null
+     * @param start          开始处理请求的System.nanoTime(),返回true时由future完成时记录整个请求的耗时
+     * @return 是否由future完成时结束请求
+     */
+    private boolean dispatchAsync(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object controller,
+                                  CompletionStage<?> future, RequestContext requestContext, InterceptorChain chain,
+                                  long start) throws Exception {
+        if (future == null) {
+            return false;
+        }
+        if (!req.isAsyncSupported()) {
+            try {
+                Object value = future.toCompletableFuture().get();
+                if (chain != null) {
+                    chain.applyPostHandle(req, resp, value);
+                }
+                processResult(req, resp, handler, value);
+            } catch (ExecutionException e) {
+                processException(req, resp, handler, controller, e.getCause());
+            }
+            return false;
+        }
+
+        AsyncResponse asyncResponse = AsyncResponse.start(req, resp, asyncTimeout);
+        future.whenComplete((value, ex) -> {
+            //已经超时
+            if (!asyncResponse.tryComplete()) {
+                if (chain != null) {
+                    chain.triggerAfterCompletion(req, resp, null);
+                }
+                if (requestContext != null) {
+                    requestContext.close();
+                }
+                if (handler.metrics != null) {
+                    handler.metrics.end(start, true);
+                }
+                return;
+            }
+            boolean failed = ex != null;
+            Exception failure = null;
+            try {
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    failure = cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+                    processException(req, resp, handler, controller, cause);
+                } else {
+                    if (chain != null) {
+                        chain.applyPostHandle(req, resp, value);
+                    }
+                    processResult(req, resp, handler, value);
+                }
+            } catch (Exception e) {
+                failed = true;
+                failure = e;
+                logger.error("async dispatch failed", e);
+            } finally {
+                if (chain != null) {
+                    chain.triggerAfterCompletion(req, resp, failure);
+                }
+                asyncResponse.complete();
+                if (handler.metrics != null) {
+                    handler.metrics.end(start, failed);
+                }
+                //输出完响应后才把bean放回对象池,model中可能引用了它们
+                if (requestContext != null) {
+                    requestContext.close();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 输出handler(或异步handler的future)的返回值
+     * 标注了@MyResponseBody的序列化为JSON直接写入响应,返回视图的解析视图
+     */
+    private void processResult(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object value) throws Exception {
+        HandlerMetrics handlerMetrics = handler.metrics;
+        if (handlerMetrics == null) {
+            writeResult(req, resp, handler, value);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writeResult(req, resp, handler, value);
+        } finally {
+            handlerMetrics.record(HandlerMetrics.Stage.RENDER, System.nanoTime() - start);
+        }
+    }
+
+    //序列化JSON或解析视图
+    private void writeResult(HttpServletRequest req, HttpServletResponse resp, Handler handler, Object value) throws Exception {
+        if (handler.responseBody) {
+            //void方法由handler自己输出
+            if (value == null && handler.method.getReturnType() == void.class) return;
+            resp.setContentType("application/json;charset=UTF-8");
+            Json.write(value, resp.getOutputStream());
+            return;
+        }
+        if (value instanceof MyModelAndView) {
+            MyModelAndView mv = (MyModelAndView) value;
+            //handler提供了版本号时以它作为ETag,客户端缓存的还是这个版本则不再渲染视图
+            if (mv.getVersion() != null && responseEncoder.isEtag()) {
+                String etag = "W/\"" + mv.getVersion() + "\"";
+                resp.setHeader("ETag", etag);
+                if (ResponseEncoder.notModified(req, etag)) {
+                    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            applyDefaultViewName(req, resp, mv);
+        }
     }
 
     /**
      * Return the Handler for this request.
      */
-    private Handler getHandler(HttpServletRequest req) {
+    Handler getHandler(HttpServletRequest req) {
 
         //若不存在url与handler的映射关系
         if (handlerMapping.isEmpty()) {
             return null;
         }
         //web项目的根路径,一般是工程名，如果工程映射为/，此处返回则为空串
-        String contextPath = req.getContextPath();
-        //把requestURI (域名端口号后的部分) 去除项目名,把多个"/"替换为1个
-        String url = req.getRequestURI().replace(contextPath, "")
-                .replaceAll("/+", "/");
+        //一次扫描requestURI (域名端口号后的部分):去除开头的项目名,把多个"/"合并为1个,写入本线程复用的缓冲区
+        RequestPath path = requestPaths.get().parse(req.getRequestURI(), req.getContextPath(), removeDotSegments, decodePath);
 
-        //遍历handlerMapping的urlPattern正则匹配请求的url
-        for (Handler handler : handlerMapping) {
-            //若匹配则返回对应的handler
-            if (handler.urlPattern.matcher(url).matches()) {
-                return handler;
+        //在路由索引中按从具体到宽泛的顺序查找url和请求条件都匹配的handler
+        Handler handler = handlerIndex.lookup(path, group -> group.select(req));
+        if (handler == null) {
+            //url匹配但请求方法等条件不匹配时返回405/415/406,url都不匹配则返回null(404)
+            MappingGroup group = handlerIndex.lookup(path);
+            if (group != null) {
+                throw group.mismatch(req);
             }
+            return null;
         }
-
-        //都不匹配则返回404
-        return null;
+        //url模板的handler,按启动时编译的偏移量截取路径变量,供@MyPathVariable参数使用
+        if (handler.pathTemplate != null) {
+            req.setAttribute(PathTemplate.VARIABLES_ATTRIBUTE, handler.pathTemplate.extract(path));
+        }
+        //启动时不能确定是否拦截的拦截器,按请求路径选择
+        if (handler.interceptorMatchers != null) {
+            req.setAttribute(InterceptorChain.INTERCEPTORS_ATTRIBUTE, InterceptorChain.select(handler, path));
+        }
+        return handler;
     }
 
     /**
@@ -276,26 +1127,62 @@ public class MyDispatcherServlet extends HttpServlet {
     }
 
 
+    //handler已经调用过getWriter()时不能再获取输出流,返回null
+    private OutputStream getOutputStream(HttpServletResponse resp) throws IOException {
+        try {
+            return resp.getOutputStream();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
     /**
      * 解析视图，输出网页
      */
     public void applyDefaultViewName(HttpServletResponse resp, MyModelAndView mv) throws Exception {
+        applyDefaultViewName(null, resp, mv);
+    }
+
+    /**
+     * 解析视图，输出网页
+     *
+     * @param req 用于按请求头Accept选择视图的内容类型,可以为null
+     */
+    public void applyDefaultViewName(HttpServletRequest req, HttpServletResponse resp, MyModelAndView mv) throws Exception {
         if (null == mv) return;
-        if (viewResolvers.isEmpty()) return;
+        if (null == viewRegistry || viewRegistry.isEmpty()) return;
 
         //匹配viewName
-        for (ViewResolver viewResolver : viewResolvers) {
-            //视图名不匹配
-            if (!mv.getView().equals(viewResolver.getViewName())) continue;
-            //解析成String并输出
-            String result = viewResolver.parse(mv);
-            if (null != result) {
-                resp.setContentType("text/html;charset=UTF-8");
-                resp.getWriter().write(result);
-                break;
+        ViewResolver viewResolver = viewRegistry.resolve(mv.getView(), null == req ? null : req.getHeader("Accept"));
+        //没有此视图
+        if (null == viewResolver) return;
+
+        resp.setContentType(viewResolver.getContentType());
+        //流式输出：直接写入响应的输出流,边渲染边发送
+        if (viewStreaming) {
+            OutputStream out = getOutputStream(resp);
+            if (out != null) {
+                viewResolver.render(mv, out, viewFlushBytes);
+                return;
             }
         }
+        //解析成String并输出
+        String result = viewResolver.parse(mv);
+        if (null != result) {
+            resp.getWriter().write(result);
+        }
     }
 
+    /**
+     * invokeHandler已在请求上下文关闭前把异常交给异常解析器链处理(已输出响应)，再抛出此异常通知外层：
+     * 记录请求失败，不输出暂存的响应体，也不再解析一次
+     */
+    private static final class ResolvedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
 
+        private ResolvedException(Exception cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
 }
@@ -17,7 +17,15 @@ public class MyModelAndView {
     /** Model Map. 携带到页面的model数据 */
     private Map<String,Object> model;
 
+    /** 页面内容的版本号(如数据的更新时间),设置后以它作为ETag,客户端缓存未过期时不再渲染视图 */
+    private String version;
+
     public MyModelAndView(String view) {
         this.view = view;
     }
+
+    public MyModelAndView(String view, Map<String,Object> model) {
+        this.view = view;
+        this.model = model;
+    }
 }
@@ -0,0 +1,131 @@
+package com.lee.framework.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的".myml"模板
+ * 模板文件只在编译时解析一次，拆分为字面量片段和"@{paramName}"占位符，
+ * 渲染时只需按顺序拼接字面量和model中的参数值，不再有磁盘IO和正则匹配
+ * 模板中的"@{!flush}"为刷新点，流式输出时渲染到此处会把已输出的内容立即发送给客户端
+ */
+public class MyTemplate {
+
+    // 自定义模板".myml"文件语法为"@{}"，(.+?)非贪婪匹配"@{}"中的参数名，"."不匹配换行所以占位符不能跨行
+    private static final Pattern PLACEHOLDER = Pattern.compile("@\\{(.+?)\\}", Pattern.CASE_INSENSITIVE);
+    // 刷新点的占位符名
+    private static final String FLUSH = "!flush";
+
+    // 字面量片段，比占位符多一个: chunks[0] @{names[0]} chunks[1] @{names[1]} ... chunks[n]
+    private final String[] chunks;
+    // 占位符中的参数名
+    private final String[] names;
+    // 占位符原文，model中没有这个参数时原样输出
+    private final String[] placeholders;
+    // 预先编码为UTF-8的字面量片段和占位符原文，流式输出时直接写字节
+    private final byte[][] chunkBytes;
+    private final byte[][] placeholderBytes;
+
+    private MyTemplate(String[] chunks, String[] names, String[] placeholders) {
+        this.chunks = chunks;
+        this.names = names;
+        this.placeholders = placeholders;
+        this.chunkBytes = new byte[chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunkBytes[i] = chunks[i].getBytes(StandardCharsets.UTF_8);
+        }
+        this.placeholderBytes = new byte[placeholders.length][];
+        for (int i = 0; i < placeholders.length; i++) {
+            placeholderBytes[i] = placeholders[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 读取并编译模板文件(UTF-8)
+     */
+    public static MyTemplate compile(File file) throws IOException {
+        return compile(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 把模板内容拆分为字面量片段和占位符
+     */
+    public static MyTemplate compile(String source) {
+        List<String> chunks = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(source);
+        int last = 0;
+        while (matcher.find()) {
+            chunks.add(source.substring(last, matcher.start()));
+            names.add(matcher.group(1));
+            placeholders.add(matcher.group());
+            last = matcher.end();
+        }
+        chunks.add(source.substring(last));
+        return new MyTemplate(chunks.toArray(new String[0]), names.toArray(new String[0]),
+                placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * 用model中的参数值渲染模板，追加到out中
+     */
+    public void render(Map<String, Object> model, StringBuilder out) {
+        for (int i = 0; i < names.length; i++) {
+            out.append(chunks[i]);
+            if (FLUSH.equals(names[i])) continue;
+            Object value = (null == model) ? null : model.get(names[i]);
+            //若参数值为null，则保留"@{paramName}"
+            if (null == value) {
+                out.append(placeholders[i]);
+            } else {
+                out.append(value);
+            }
+        }
+        out.append(chunks[names.length]);
+    }
+
+    /**
+     * 用model中的参数值渲染模板，直接写入输出流
+     * 字面量片段使用预先编码的字节，只有model中的参数值需要编码
+     *
+     * @param flushBytes 每输出超过此字节数就flush一次，0表示只在"@{!flush}"处flush
+     */
+    public void writeTo(Map<String, Object> model, OutputStream out, int flushBytes) throws IOException {
+        //距离上次flush输出的字节数
+        int unflushed = 0;
+        for (int i = 0; i <= names.length; i++) {
+            byte[] chunk = chunkBytes[i];
+            out.write(chunk);
+            unflushed += chunk.length;
+            if (flushBytes > 0 && unflushed >= flushBytes) {
+                out.flush();
+                unflushed = 0;
+            }
+            if (i == names.length) break;
+
+            if (FLUSH.equals(names[i])) {
+                out.flush();
+                unflushed = 0;
+                continue;
+            }
+            Object value = (null == model) ? null : model.get(names[i]);
+            //若参数值为null，则保留"@{paramName}"
+            byte[] bytes = (null == value) ? placeholderBytes[i] : value.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            unflushed += bytes.length;
+            if (flushBytes > 0 && unflushed >= flushBytes) {
+                out.flush();
+                unflushed = 0;
+            }
+        }
+    }
+}
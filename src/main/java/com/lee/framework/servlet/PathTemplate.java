@@ -0,0 +1,281 @@
+package com.lee.framework.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 含路径变量的url模板，如"/user/{id}"、"/user/{id}/order/{orderId}.json"
+ * 启动时编译：记录每个变量所在的路径段及其前后字面量的长度，请求时按RequestPath中路径段的偏移量截取变量值，不使用正则
+ * 每个路径段最多一个变量，变量匹配一个非空的路径段(不含"/")；模板中的其他部分都是字面量，"."不再表示任意字符
+ */
+public final class PathTemplate {
+
+    /**
+     * 请求属性名，值为本次请求的路径变量值(String[]，按变量在模板中的顺序)
+     */
+    public static final String VARIABLES_ATTRIBUTE = PathTemplate.class.getName() + ".variables";
+
+    //模板中不允许出现的正则元字符,模板与正则不能混用
+    private static final String REGEX_CHARS = "[]()*+?^$|";
+
+    private final String template;
+    //按"/"切分的路径段,segments[0]为"/"前面的空串
+    private final Segment[] segments;
+    //第i个变量的变量名
+    private final String[] names;
+    //第i个变量所在的路径段
+    private final int[] segmentIndexes;
+    //第i个变量前面的字面量长度
+    private final int[] prefixLengths;
+    //第i个变量后面的字面量长度
+    private final int[] suffixLengths;
+
+    private PathTemplate(String template, Segment[] segments) {
+        this.template = template;
+        this.segments = segments;
+        List<Integer> variables = new ArrayList<>();
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].name != null) {
+                variables.add(i);
+            }
+        }
+        names = new String[variables.size()];
+        segmentIndexes = new int[names.length];
+        prefixLengths = new int[names.length];
+        suffixLengths = new int[names.length];
+        for (int v = 0; v < names.length; v++) {
+            Segment segment = segments[variables.get(v)];
+            names[v] = segment.name;
+            segmentIndexes[v] = variables.get(v);
+            prefixLengths[v] = segment.prefix.length();
+            suffixLengths[v] = segment.suffix.length();
+        }
+    }
+
+    /**
+     * @return url中是否有"{变量名}"，有则按模板而不是正则处理
+     */
+    public static boolean isTemplate(String url) {
+        for (int i = url.indexOf('{'); i >= 0; i = url.indexOf('{', i + 1)) {
+            //正则中的"{"只用于量词,如"{2}"、"{1,3}",后面是数字
+            if (i + 1 < url.length() && isNameStart(url.charAt(i + 1)) && (i == 0 || url.charAt(i - 1) != '\\')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 编译url模板
+     *
+     * @param template 已去除连续"/"的url模板，以"/"开头
+     * @throws IllegalArgumentException 模板的语法错误，如一个路径段中有多个变量、变量名重复、混用正则
+     */
+    public static PathTemplate compile(String template) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Path template must start with '/' : " + template);
+        }
+        List<Segment> segments = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= template.length(); i++) {
+            if (i == template.length() || template.charAt(i) == '/') {
+                Segment segment = parseSegment(template, template.substring(start, i));
+                if (segment.name != null) {
+                    if (names.contains(segment.name)) {
+                        throw new IllegalArgumentException("Duplicate path variable {" + segment.name + "} in " + template);
+                    }
+                    names.add(segment.name);
+                }
+                segments.add(segment);
+                start = i + 1;
+            }
+        }
+        return new PathTemplate(template, segments.toArray(new Segment[0]));
+    }
+
+    //解析一个路径段："前缀{变量名}后缀"或字面量
+    private static Segment parseSegment(String template, String segment) {
+        int open = -1;
+        int close = -1;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{') {
+                if (open >= 0) {
+                    throw new IllegalArgumentException("Only one path variable is allowed per segment : " + template);
+                }
+                open = i;
+                close = segment.indexOf('}', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed path variable in " + template);
+                }
+                i = close;
+            } else if (REGEX_CHARS.indexOf(c) >= 0 || c == '}') {
+                throw new IllegalArgumentException("Path template cannot contain regex '" + c + "' : " + template);
+            }
+        }
+        if (open < 0) {
+            return new Segment(unescape(segment), null, null);
+        }
+        String name = segment.substring(open + 1, close);
+        if (!isName(name)) {
+            throw new IllegalArgumentException("Invalid path variable {" + name + "} in " + template);
+        }
+        return new Segment(unescape(segment.substring(0, open)), name, unescape(segment.substring(close + 1)));
+    }
+
+    /**
+     * 从匹配此模板的请求路径中截取路径变量的值，按路径段的偏移量直接截取，不再扫描url
+     *
+     * @param path 已由路由索引匹配此模板的请求路径
+     * @return 按变量在模板中的顺序排列的值，已做百分号解码
+     */
+    public String[] extract(RequestPath path) {
+        String[] values = new String[names.length];
+        for (int v = 0; v < names.length; v++) {
+            int from = path.segmentStart(segmentIndexes[v]) + prefixLengths[v];
+            int to = path.segmentEnd(segmentIndexes[v]) - suffixLengths[v];
+            //请求路径已整体解码时不能再次解码,如"%2525"
+            values[v] = path.isDecoded() ? path.substring(from, to) : decode(path, from, to);
+        }
+        return values;
+    }
+
+    /**
+     * @return 变量在模板中的顺序，没有此变量返回-1
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 与此模板匹配相同url的正则，变量匹配"[^/]+"
+     */
+    public String toRegex() {
+        StringBuilder sb = new StringBuilder(template.length() + 16);
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            Segment segment = segments[i];
+            if (segment.name == null) {
+                quote(segment.literal, sb);
+            } else {
+                quote(segment.prefix, sb);
+                sb.append("[^/]+");
+                quote(segment.suffix, sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    //路由索引按路径段把模板放入trie
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    //百分号解码,按UTF-8解码多字节字符;与查询参数不同,路径中的"+"不是空格
+    private static String decode(RequestPath url, int from, int to) {
+        int percent = from;
+        while (percent < to && url.charAt(percent) != '%') {
+            percent++;
+        }
+        if (percent == to) {
+            return url.substring(from, to);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(to - from);
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < to
+                    && Character.digit(url.charAt(i + 1), 16) >= 0 && Character.digit(url.charAt(i + 2), 16) >= 0) {
+                bytes.write(Character.digit(url.charAt(i + 1), 16) << 4 | Character.digit(url.charAt(i + 2), 16));
+                i += 2;
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void quote(String literal, StringBuilder sb) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if ("\\.[]{}()*+?^$|".indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    private static String unescape(String literal) {
+        if (literal.indexOf('\\') < 0) {
+            return literal;
+        }
+        StringBuilder sb = new StringBuilder(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '\\' && i + 1 < literal.length()) {
+                c = literal.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isName(String name) {
+        if (name.isEmpty() || !isNameStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isLetterOrDigit(name.charAt(i)) && name.charAt(i) != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 模板的一个路径段：字面量，或"前缀{变量名}后缀"
+     */
+    static final class Segment {
+        //字面量路径段,有变量时为null
+        final String literal;
+        final String prefix;
+        final String name;
+        final String suffix;
+
+        private Segment(String literal, String name, String suffix) {
+            this.literal = name == null ? literal : null;
+            this.prefix = name == null ? null : literal;
+            this.name = name;
+            this.suffix = suffix;
+        }
+    }
+}
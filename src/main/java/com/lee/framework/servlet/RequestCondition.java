@@ -0,0 +1,181 @@
+package com.lee.framework.servlet;
+
+import com.lee.framework.annotation.MyRequestMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * handler除url外的匹配条件：请求方法、请求的Content-Type(consumes)、可接受的响应类型Accept(produces)
+ * 启动时由@MyRequestMapping创建，方法上的条件覆盖controller上的，没有任何条件的handler不创建(为null)
+ */
+public final class RequestCondition {
+
+    private static final String[] NONE = new String[0];
+
+    //大写的请求方法,为空时不限制
+    private final String[] methods;
+    //小写的"type/subtype",可以是"type/*",为空时不限制
+    private final String[] consumes;
+    //小写的"type/subtype",为空时不限制
+    private final String[] produces;
+
+    private RequestCondition(String[] methods, String[] consumes, String[] produces) {
+        this.methods = methods;
+        this.consumes = consumes;
+        this.produces = produces;
+    }
+
+    /**
+     * @param typeMapping   controller上的@MyRequestMapping，可以为null
+     * @param methodMapping handler方法上的@MyRequestMapping
+     * @return 没有任何条件时返回null
+     */
+    static RequestCondition of(MyRequestMapping typeMapping, MyRequestMapping methodMapping) {
+        String[] methods = normalize(pick(typeMapping == null ? null : typeMapping.method(), methodMapping.method()), true);
+        String[] consumes = normalize(pick(typeMapping == null ? null : typeMapping.consumes(), methodMapping.consumes()), false);
+        String[] produces = normalize(pick(typeMapping == null ? null : typeMapping.produces(), methodMapping.produces()), false);
+        if (methods.length == 0 && consumes.length == 0 && produces.length == 0) {
+            return null;
+        }
+        return new RequestCondition(methods, consumes, produces);
+    }
+
+    //方法上设置了时使用方法上的,否则使用controller上的
+    private static String[] pick(String[] typeValues, String[] methodValues) {
+        return methodValues.length > 0 || typeValues == null ? methodValues : typeValues;
+    }
+
+    private static String[] normalize(String[] values, boolean upperCase) {
+        if (values.length == 0) {
+            return NONE;
+        }
+        String[] normalized = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].trim();
+            normalized[i] = upperCase ? value.toUpperCase(Locale.ROOT) : mediaType(value, 0, value.length());
+        }
+        return normalized;
+    }
+
+    boolean matches(HttpServletRequest req) {
+        return matchesMethod(req.getMethod()) && matchesConsumes(req) && matchesProduces(req);
+    }
+
+    //GET的handler同时处理HEAD请求
+    boolean matchesMethod(String method) {
+        if (methods.length == 0) {
+            return true;
+        }
+        for (String m : methods) {
+            if (m.equals(method) || "HEAD".equals(method) && "GET".equals(m)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matchesConsumes(HttpServletRequest req) {
+        if (consumes.length == 0) {
+            return true;
+        }
+        String contentType = req.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        String type = mediaType(contentType, 0, end < 0 ? contentType.length() : end);
+        for (String consume : consumes) {
+            if (compatible(consume, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //没有Accept请求头时接受任何类型
+    boolean matchesProduces(HttpServletRequest req) {
+        if (produces.length == 0) {
+            return true;
+        }
+        String accept = req.getHeader("Accept");
+        if (accept == null || accept.isEmpty()) {
+            return true;
+        }
+        //逐个扫描Accept中以","分隔的类型,忽略";"后的参数
+        int start = 0;
+        while (start < accept.length()) {
+            int comma = accept.indexOf(',', start);
+            int end = comma < 0 ? accept.length() : comma;
+            int semicolon = accept.indexOf(';', start);
+            String type = mediaType(accept, start, semicolon >= 0 && semicolon < end ? semicolon : end);
+            for (String produce : produces) {
+                if (compatible(type, produce)) {
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return 条件的具体程度，设置了的条件越多越具体，同一url映射的handler按此从高到低匹配
+     */
+    int specificity() {
+        return (methods.length > 0 ? 4 : 0) + (consumes.length > 0 ? 2 : 0) + (produces.length > 0 ? 1 : 0);
+    }
+
+    String[] getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return 两个条件是否可能同时匹配同一个请求，同一url映射的handler的条件重叠时无法确定由哪个处理
+     */
+    static boolean overlaps(RequestCondition a, RequestCondition b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return intersects(a.methods, b.methods) && intersects(a.consumes, b.consumes) && intersects(a.produces, b.produces);
+    }
+
+    //都不限制时相交;一方限制而另一方不限制时,限制的一方更具体,总是先匹配,不算重叠
+    private static boolean intersects(String[] a, String[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return a.length == b.length;
+        }
+        for (String value : a) {
+            for (String other : b) {
+                if (compatible(value, other)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //"type/subtype"是否兼容,"*/*"和"type/*"匹配对应的类型
+    private static boolean compatible(String pattern, String type) {
+        if (pattern.equals(type) || "*/*".equals(pattern) || "*/*".equals(type)) {
+            return true;
+        }
+        int slash = pattern.indexOf('/');
+        if (slash > 0 && pattern.endsWith("/*")) {
+            return type.regionMatches(0, pattern, 0, slash + 1);
+        }
+        slash = type.indexOf('/');
+        return slash > 0 && type.endsWith("/*") && pattern.regionMatches(0, type, 0, slash + 1);
+    }
+
+    private static String mediaType(String str, int from, int to) {
+        return str.substring(from, to).trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return "methods=" + Arrays.toString(methods) + ", consumes=" + Arrays.toString(consumes)
+                + ", produces=" + Arrays.toString(produces);
+    }
+}
@@ -0,0 +1,235 @@
+package com.lee.framework.servlet;
+
+import java.util.Arrays;
+
+/**
+ * 规范化后的请求路径，路由时使用的轻量视图
+ * 一次扫描requestURI完成：去除开头的项目名、合并连续的"/"、可选的去除"."和".."路径段、可选的百分号解码，
+ * 同时记录每个路径段的起始位置，路由索引按偏移量逐段比较，正则直接匹配此CharSequence，不再复制出子串
+ * <p>
+ * 字符写入可复用的缓冲区，dispatcher为每个线程保留一个实例，不是线程安全的，只在getHandler中使用
+ */
+public final class RequestPath implements CharSequence {
+
+    //不合法的UTF-8字节序列解码为此字符
+    private static final char REPLACEMENT = '\uFFFD';
+    //1~4个字节的UTF-8编码能表示的最小码点,小于它的是过长编码
+    private static final int[] MIN_CODE_POINTS = {0, 0x80, 0x800, 0x10000};
+
+    private char[] buffer = new char[128];
+    private int length;
+    //segmentStarts[i]为第i个路径段的起始位置,第0个为第一个"/"前面的空串
+    private int[] segmentStarts = new int[16];
+    private int segmentCount;
+    //是否已做百分号解码
+    private boolean decoded;
+
+    /**
+     * 由已规范化的url创建(不去除项目名，不解码)，用于启动时按url查找路由
+     */
+    public static RequestPath of(String url) {
+        return new RequestPath().parse(url, null, false, false);
+    }
+
+    /**
+     * 规范化请求路径，覆盖此实例之前的内容
+     *
+     * @param uri               HttpServletRequest.getRequestURI()
+     * @param contextPath       项目名，只去除uri开头完整的路径段，可以为null
+     * @param removeDotSegments 是否去除"."和".."路径段，".."不会越过根路径
+     * @param decode            是否百分号解码；"%2F"保持原样，不作为路径的分隔符
+     * @return this
+     */
+    public RequestPath parse(String uri, String contextPath, boolean removeDotSegments, boolean decode) {
+        int start = 0;
+        if (contextPath != null && !contextPath.isEmpty() && uri.startsWith(contextPath)
+                && (uri.length() == contextPath.length() || uri.charAt(contextPath.length()) == '/')) {
+            start = contextPath.length();
+        }
+        int end = uri.length();
+        ensureCapacity(end - start);
+        length = 0;
+        segmentStarts[0] = 0;
+        segmentCount = 1;
+        decoded = decode;
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '%' && decode) {
+                int b = hex(uri, i, end);
+                if (b >= 0 && b != '/') {
+                    i = decodeUtf8(uri, i, end, b);
+                    continue;
+                }
+            }
+            if (c == '/') {
+                //合并连续的"/"
+                if (length > 0 && buffer[length - 1] == '/') {
+                    continue;
+                }
+                if (removeDotSegments && removeDotSegment()) {
+                    continue;
+                }
+                buffer[length++] = '/';
+                if (segmentCount == segmentStarts.length) {
+                    segmentStarts = Arrays.copyOf(segmentStarts, segmentCount * 2);
+                }
+                segmentStarts[segmentCount++] = length;
+            } else {
+                buffer[length++] = c;
+            }
+        }
+        if (removeDotSegments) {
+            removeDotSegment();
+        }
+        return this;
+    }
+
+    /**
+     * 最后一个路径段是"."时去掉它，是".."时连同前一个路径段一起去掉，保留前面的"/"
+     *
+     * @return 是否去掉了
+     */
+    private boolean removeDotSegment() {
+        int current = segmentCount - 1;
+        int from = segmentStarts[current];
+        int size = length - from;
+        if (current == 0 || size == 0 || size > 2 || buffer[from] != '.' || size == 2 && buffer[from + 1] != '.') {
+            return false;
+        }
+        //".."且前面还有路径段时,回到前一个路径段的开头
+        if (size == 2 && current > 1) {
+            segmentCount--;
+            from = segmentStarts[current - 1];
+        }
+        length = from;
+        return true;
+    }
+
+    //按UTF-8解码从i开始的连续的"%XX",返回最后一个已处理的字符的位置
+    //不合法的字节序列(包括过长编码,如"%C0%AF"表示的"/")解码为U+FFFD
+    private int decodeUtf8(String uri, int i, int end, int first) {
+        int extra;
+        if (first < 0x80) {
+            extra = 0;
+        } else if (first >= 0xC2 && first < 0xE0) {
+            extra = 1;
+        } else if (first >= 0xE0 && first < 0xF0) {
+            extra = 2;
+        } else if (first >= 0xF0 && first < 0xF5) {
+            extra = 3;
+        } else {
+            buffer[length++] = REPLACEMENT;
+            return i + 2;
+        }
+        int codePoint = extra == 0 ? first : first & (0x3F >> extra);
+        int last = i + 2;
+        for (int k = 0; k < extra; k++) {
+            int b = hex(uri, last + 1, end);
+            if (b < 0 || (b & 0xC0) != 0x80) {
+                buffer[length++] = REPLACEMENT;
+                return last;
+            }
+            codePoint = codePoint << 6 | b & 0x3F;
+            last += 3;
+        }
+        if (codePoint < MIN_CODE_POINTS[extra] || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE
+                || !Character.isValidCodePoint(codePoint)) {
+            buffer[length++] = REPLACEMENT;
+        } else if (Character.isBmpCodePoint(codePoint)) {
+            buffer[length++] = (char) codePoint;
+        } else {
+            buffer[length++] = Character.highSurrogate(codePoint);
+            buffer[length++] = Character.lowSurrogate(codePoint);
+        }
+        return last;
+    }
+
+    //uri中i位置的"%XX"表示的字节,不是合法的"%XX"时返回-1
+    private static int hex(String uri, int i, int end) {
+        if (i + 2 >= end || uri.charAt(i) != '%') {
+            return -1;
+        }
+        int high = Character.digit(uri.charAt(i + 1), 16);
+        int low = Character.digit(uri.charAt(i + 2), 16);
+        return high < 0 || low < 0 ? -1 : high << 4 | low;
+    }
+
+    //解码后不会比原来长("%XX"最多解码为两个char)
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new char[Math.max(capacity, buffer.length * 2)];
+        }
+    }
+
+    /**
+     * @return 路径段的个数，"/a/b"为3个：""、"a"、"b"
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int segmentStart(int segment) {
+        return segmentStarts[segment];
+    }
+
+    public int segmentEnd(int segment) {
+        return segment + 1 < segmentCount ? segmentStarts[segment + 1] - 1 : length;
+    }
+
+    /**
+     * @return [from, to)的字符是否与str相同
+     */
+    public boolean regionEquals(int from, int to, String str) {
+        if (to - from != str.length()) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (buffer[i] != str.charAt(i - from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return [from, to)的字符的哈希值，与相同内容的String.hashCode()相等
+     */
+    public int hash(int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buffer[i];
+        }
+        return h;
+    }
+
+    public String substring(int from, int to) {
+        return new String(buffer, from, to - from);
+    }
+
+    public boolean isDecoded() {
+        return decoded;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return buffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+}
@@ -0,0 +1,210 @@
+package com.lee.framework.servlet;
+
+import lombok.Getter;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 标注了@MyCacheable的GET请求的响应缓存，保存渲染后的响应体字节
+ * 命中时直接输出字节，不再绑定参数、调用handler和渲染视图
+ * 按总字节数限制大小，超出时淘汰最久未访问的响应(LRU)
+ * 缓存key以去掉项目名(context path)并规范化后的请求路径开头，与@MyRequestMapping的url一致，可以按url前缀失效，如invalidate("/user/")
+ */
+public class ResponseCache {
+
+    //每个缓存项除响应体外的估算开销(字节)
+    private static final int ENTRY_OVERHEAD = 64;
+
+    //最多缓存的字节数
+    private final long maxBytes;
+    //已缓存的字节数，只在持有this锁时访问
+    private long bytes;
+
+    // key：缓存key  value：缓存的响应，accessOrder为true时按访问顺序排列，队首为最久未访问的
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    //命中、未命中、淘汰的次数
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 由请求路径、参数和handler生成缓存key，如"/user/list.json?page=1&size=10#3"
+     * 0、请求路径是路由使用的RequestPath，不含项目名，应用部署在"/app"下时key也以"/user/"开头
+     * 1、@MyCacheable指定了参数名时，参数名和值经过URL编码，"p=a%26x%3Db"与"p=a&x=b"不会得到相同的key
+     * 2、"#"后为handler的序号：同一url按请求方法、produces等条件匹配到不同handler时，各自缓存
+     * 3、返回视图的handler按请求的Accept选择模板(内容类型)，Accept也作为key的一部分
+     */
+    static String key(HttpServletRequest req, RequestPath path, Handler handler) {
+        String[] paramNames = handler.cacheable.key();
+        StringBuilder sb = new StringBuilder(path.length() + 32);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            //百分号解码后的路径中可能有"?"、"#",重新编码,不与查询字符串和handler序号混淆
+            if (path.isDecoded() && (c == '%' || c == '?' || c == '#')) {
+                sb.append(c == '%' ? "%25" : c == '?' ? "%3F" : "%23");
+            } else {
+                sb.append(c);
+            }
+        }
+        if (paramNames.length == 0) {
+            //查询字符串是客户端发送的原始(已编码)内容
+            String queryString = req.getQueryString();
+            if (queryString != null) {
+                sb.append('?').append(queryString);
+            }
+        } else {
+            char separator = '?';
+            for (String paramName : paramNames) {
+                String[] values = req.getParameterValues(paramName);
+                if (values == null) continue;
+                for (String value : values) {
+                    sb.append(separator).append(encode(paramName)).append('=').append(encode(value));
+                    separator = '&';
+                }
+            }
+        }
+        sb.append('#').append(handler.id);
+        if (handler.returnModelAndView) {
+            String accept = req.getHeader("Accept");
+            sb.append('#').append(accept == null ? "" : accept);
+        }
+        return sb.toString();
+    }
+
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 缓存的响应，没有或已过期返回null
+     */
+    CachedResponse get(String key) {
+        CachedResponse cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null && cached.expiresAt <= System.currentTimeMillis()) {
+                remove(key);
+                cached = null;
+            }
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * 缓存响应
+     *
+     * @param ttl 有效期(毫秒)
+     */
+    void put(String key, String contentType, byte[] body, long ttl) {
+        CachedResponse cached = new CachedResponse(contentType, body, System.currentTimeMillis() + ttl);
+        long weight = weigh(key, cached);
+        if (weight > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            CachedResponse old = entries.put(key, cached);
+            if (old != null) {
+                bytes -= weigh(key, old);
+            }
+            bytes += weight;
+            //淘汰最久未访问的响应,直到不超过限制
+            Iterator<Map.Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, CachedResponse> eldest = iterator.next();
+                iterator.remove();
+                bytes -= weigh(eldest.getKey(), eldest.getValue());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 使所有以此前缀开头的缓存失效
+     *
+     * @param prefix 缓存key的前缀，一般为url前缀，如"/user/"
+     * @return 失效的缓存个数
+     */
+    public synchronized int invalidate(String prefix) {
+        int removed = 0;
+        Iterator<Map.Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedResponse> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                bytes -= weigh(entry.getKey(), entry.getValue());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return 缓存的统计信息：命中、未命中、淘汰次数、缓存个数和字节数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    private void remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= weigh(key, removed);
+        }
+    }
+
+    private static long weigh(String key, CachedResponse cached) {
+        return cached.body.length + key.length() * 2L + ENTRY_OVERHEAD;
+    }
+
+    //缓存的响应
+    @Getter
+    static class CachedResponse {
+        private final String contentType;
+        private final byte[] body;
+        private final long expiresAt;
+
+        private CachedResponse(String contentType, byte[] body, long expiresAt) {
+            this.contentType = contentType;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.lee.framework.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 输出已渲染好的完整响应体：
+ * 1、生成ETag(响应体的哈希值，或handler提供的版本号)，请求的If-None-Match与之相同时返回304，不输出响应体
+ * 2、按请求的Accept-Encoding以gzip/deflate压缩输出，压缩结果按ETag缓存，内容不变的页面(如静态模板)只压缩一次
+ * 响应体超过compression.maxBufferBytes时不经过此类，由CachingResponseWrapper直接输出
+ */
+class ResponseEncoder {
+
+    //配置文件中的参数名
+    static final String ETAG = "etag";
+    static final String COMPRESSION = "compression";
+    static final String COMPRESSION_MIN_BYTES = "compression.minBytes";
+    static final String COMPRESSION_CACHE_BYTES = "compression.cacheBytes";
+    static final String COMPRESSION_MAX_BUFFER_BYTES = "compression.maxBufferBytes";
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    //每个线程复用的SHA-256摘要,MessageDigest不是线程安全的
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    //是否生成ETag
+    private final boolean etag;
+    //是否压缩
+    private final boolean compression;
+    //小于此字节数的响应不压缩
+    private final int minBytes;
+    //压缩后的响应体，key：编码 + ":" + 响应体的SHA-256
+    private final ResponseCache compressed;
+    //暂存响应体的上限，超过时不再生成ETag和压缩，直接输出
+    private final int maxBufferBytes;
+
+    ResponseEncoder(Properties config) {
+        this.etag = Boolean.parseBoolean(config.getProperty(ETAG, "false").trim());
+        this.compression = Boolean.parseBoolean(config.getProperty(COMPRESSION, "false").trim());
+        this.minBytes = Integer.parseInt(config.getProperty(COMPRESSION_MIN_BYTES, "1024").trim());
+        long cacheBytes = Long.parseLong(config.getProperty(COMPRESSION_CACHE_BYTES, "0").trim());
+        this.compressed = compression && cacheBytes > 0 ? new ResponseCache(cacheBytes) : null;
+        this.maxBufferBytes = Integer.parseInt(config.getProperty(COMPRESSION_MAX_BUFFER_BYTES, "1048576").trim());
+    }
+
+    /**
+     * @return 是否需要先把响应体完整渲染出来再输出
+     */
+    boolean isEnabled() {
+        return etag || compression;
+    }
+
+    boolean isEtag() {
+        return etag;
+    }
+
+    int getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    /**
+     * 输出响应体
+     *
+     * @param contentType 响应的内容类型，可以为null
+     * @param etag        handler已设置的ETag，为null时由响应体的哈希值生成
+     */
+    void write(HttpServletRequest req, HttpServletResponse resp, String contentType, byte[] body, String etag) throws IOException {
+        String encoding = body.length >= minBytes && compressible(contentType)
+                ? negotiate(req.getHeader("Accept-Encoding")) : null;
+        if (compression && compressible(contentType)) {
+            resp.setHeader("Vary", "Accept-Encoding");
+        }
+        //响应体的哈希值,用于生成ETag和缓存压缩结果
+        String hash = null;
+        if (this.etag) {
+            if (etag == null) {
+                //强ETag区分不同编码的响应体
+                hash = hash(body);
+                etag = "\"" + hash + (encoding == null ? "" : "-" + encoding) + "\"";
+            }
+            resp.setHeader("ETag", etag);
+            if (notModified(req, etag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        if (contentType != null) {
+            resp.setContentType(contentType);
+        }
+        if (encoding != null) {
+            body = compress(body, encoding, hash);
+            resp.setHeader("Content-Encoding", encoding);
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * @return 请求的If-None-Match是否包含此ETag(弱比较)
+     */
+    static boolean notModified(HttpServletRequest req, String etag) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String tag = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate) || opaque(candidate).equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //去掉弱ETag的"W/"前缀
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    //SHA-256(base64url)，压缩结果的缓存由所有请求共享，不能用CRC32等容易构造碰撞的哈希，否则可能把别人的响应返回给请求者
+    private static String hash(byte[] body) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(body));
+    }
+
+    //按Accept-Encoding选择编码，优先gzip，q=0表示不接受
+    private String negotiate(String acceptEncoding) {
+        if (!compression || acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim();
+            if (parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (GZIP.equalsIgnoreCase(coding)) {
+                return GZIP;
+            }
+            deflate |= DEFLATE.equalsIgnoreCase(coding);
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    //只压缩文本类的内容
+    private static boolean compressible(String contentType) {
+        return contentType != null && (contentType.startsWith("text/") || contentType.contains("json")
+                || contentType.contains("xml") || contentType.contains("javascript"));
+    }
+
+    //压缩响应体，按响应体的SHA-256缓存压缩结果
+    private byte[] compress(byte[] body, String encoding, String hash) throws IOException {
+        String key = compressed == null ? null : encoding + ":" + (hash != null ? hash : hash(body));
+        if (key != null) {
+            ResponseCache.CachedResponse cached = compressed.get(key);
+            if (cached != null) {
+                return cached.getBody();
+            }
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (OutputStream out = GZIP.equals(encoding) ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer)) {
+            out.write(body);
+        }
+        byte[] result = buffer.toByteArray();
+        if (key != null) {
+            compressed.put(key, null, result, Long.MAX_VALUE / 2);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+package com.lee.framework.servlet;
+
+/**
+ * 以指定的状态码结束请求的异常，如请求方法不被支持(405)、Content-Type不被支持(415)、无法生成可接受的响应类型(406)
+ * 由默认的异常解析器输出"状态码 原因"
+ */
+public class ResponseStatusException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final String reason;
+    //405时响应的Allow请求头,其他状态码为null
+    private final String allow;
+
+    public ResponseStatusException(int status, String reason) {
+        this(status, reason, null);
+    }
+
+    public ResponseStatusException(int status, String reason, String allow) {
+        //客户端的错误,不需要堆栈,不填充堆栈以减少创建异常的开销
+        super(status + " " + reason, null, false, false);
+        this.status = status;
+        this.reason = reason;
+        this.allow = allow;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public String getAllow() {
+        return allow;
+    }
+}
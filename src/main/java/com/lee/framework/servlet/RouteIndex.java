@@ -0,0 +1,485 @@
+package com.lee.framework.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * url路由索引，在initHandlerMappings时一次性构建，取代逐个handler正则匹配的线性扫描
+ * 1、urlPattern中的字面量路径段(如"/user/list")组成一棵前缀树(trie)，请求时按路径段逐层查找
+ * 2、含正则元字符的路径段无法进入trie，此时把整个正则挂在它的最长字面量前缀节点上，请求时只对沿途经过的节点做正则匹配
+ * 3、url模板(如"/user/{id}")中的变量路径段作为变量节点，字面量子节点优先于变量节点，前后缀更长的变量节点优先
+ * 所以查找的代价约等于url的路径深度，与handler的数量无关，且与原来正则的matches()语义一致
+ *
+ * @param <T> 路由到的对象，一般为Handler
+ */
+public class RouteIndex<T> {
+
+    //正则中的元字符
+    private static final String META_CHARS = "\\.[]{}()*+?^$|";
+    //路径段的分类：纯字面量 / 只含"."元字符 / 其他正则
+    private static final int STRICT = 0;
+    private static final int DOT = 1;
+    private static final int REGEX = 2;
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * 注册一个url正则与对应的路由对象
+     *
+     * @param regex 已去除连续"/"的url正则，即MyRequestMapping.value()拼接后的结果，含"{变量名}"时按url模板处理
+     * @param value 路由对象
+     * @return 已经以相同的url正则注册过的路由对象，没有冲突返回null
+     */
+    public T register(String regex, T value) {
+        if (PathTemplate.isTemplate(regex)) {
+            return register(PathTemplate.compile(regex), value);
+        }
+        //以"/"分隔路径段，第一个段必为""(正则以"/"开头)
+        String[] segments = split(regex);
+        //"|"在最外层时(如"/a|/b")，不存在所有分支公共的前缀，只能挂在根节点
+        if (segments.length == 0 || !segments[0].isEmpty() || hasTopLevelAlternation(regex)) {
+            return root.addPattern(regex, value);
+        }
+
+        //对每个路径段分类，求出最长的纯字面量前缀
+        int prefixLength = 0;
+        boolean exact = true;  //是否所有路径段都可按字面量匹配
+        boolean loose = false; //是否有路径段中的"."被当作了字面量
+        for (int i = 1; i < segments.length; i++) {
+            int kind = classify(segments[i]);
+            if (kind == REGEX) {
+                exact = false;
+                //以量词开头的路径段，量词修饰的是前面的"/"，前一个路径段不再是完整的路径段，如"/ab/*c"可匹配"/abc"
+                if (prefixLength == i - 1 && prefixLength > 0 && isQuantifier(segments[i].charAt(0))) {
+                    prefixLength--;
+                }
+                break;
+            }
+            if (kind == DOT) {
+                loose = true;
+            }
+            if (!loose) {
+                prefixLength = i;
+            }
+        }
+
+        if (exact) {
+            //可完全按字面量匹配的url，直接放入trie的叶子节点
+            Node<T> node = root;
+            for (int i = 1; i < segments.length; i++) {
+                node = node.child(unescape(segments[i]));
+            }
+            if (node.exact != null) {
+                return node.exact;
+            }
+            node.exact = value;
+            //路径段中的"."在正则里可以匹配任意字符，字面量未命中时仍需要按正则兜底
+            if (!loose) {
+                return null;
+            }
+        }
+
+        //含正则的url，挂在其最长字面量前缀的节点上
+        Node<T> node = root;
+        for (int i = 1; i <= prefixLength; i++) {
+            node = node.child(unescape(segments[i]));
+        }
+        return node.addPattern(regex, value);
+    }
+
+    /**
+     * 注册一个url模板，变量路径段挂在变量节点下
+     *
+     * @return 已经注册过的匹配相同url的模板的路由对象(变量名可以不同)，没有冲突返回null
+     */
+    public T register(PathTemplate template, T value) {
+        PathTemplate.Segment[] segments = template.getSegments();
+        Node<T> node = root;
+        for (int i = 1; i < segments.length; i++) {
+            PathTemplate.Segment segment = segments[i];
+            node = segment.name == null ? node.child(segment.literal) : node.variable(segment.prefix, segment.suffix);
+        }
+        if (node.exact != null) {
+            return node.exact;
+        }
+        node.exact = value;
+        return null;
+    }
+
+    /**
+     * 查找匹配此url的路由对象
+     * 优先返回字面量完全匹配的，否则从最深的前缀节点往根节点方向依次做正则匹配
+     *
+     * @param url 已去除项目名和连续"/"的请求url
+     * @return 匹配的路由对象，都不匹配返回null
+     */
+    public T lookup(String url) {
+        return lookup(RequestPath.of(url), Function.identity());
+    }
+
+    public T lookup(RequestPath path) {
+        return lookup(path, Function.identity());
+    }
+
+    /**
+     * 按从具体到宽泛的顺序查找匹配此url的路由对象，返回第一个被selector接受的结果
+     * 字面量 > 前后缀更长的变量 > 变量 > 正则(从最深的前缀节点往根节点方向)，
+     * 如同一url映射的handler都不接受此请求(请求方法不匹配等)时，继续尝试更宽泛的路由
+     *
+     * @param path     已规范化的请求路径，按其中记录的路径段偏移量逐段查找，不复制子串
+     * @param selector 由路由对象得到结果，返回null表示不接受，继续查找
+     * @return 第一个非null的结果，都不匹配返回null
+     */
+    public <R> R lookup(RequestPath path, Function<? super T, R> selector) {
+        //第0个路径段为"/"前面的空串，从1开始逐段查找；不以"/"开头的url只可能匹配根节点上的正则
+        if (path.segmentEnd(0) == 0) {
+            return find(root, path, 1, selector);
+        }
+        return matchPatterns(root, path, selector);
+    }
+
+    //深度优先查找：先在子节点中找更具体的路由,都不匹配时再匹配挂在此节点上的正则
+    private <R> R find(Node<T> node, RequestPath path, int i, Function<? super T, R> selector) {
+        R result;
+        if (i == path.getSegmentCount()) {
+            //所有路径段都命中
+            if (node.exact != null && (result = selector.apply(node.exact)) != null) {
+                return result;
+            }
+        } else {
+            int from = path.segmentStart(i);
+            int to = path.segmentEnd(i);
+            Node<T> child = node.child(path, from, to);
+            if (child != null && (result = find(child, path, i + 1, selector)) != null) {
+                return result;
+            }
+            if (node.variables != null) {
+                for (Variable<T> variable : node.variables) {
+                    if (variable.matches(path, from, to)
+                            && (result = find(variable.node, path, i + 1, selector)) != null) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return matchPatterns(node, path, selector);
+    }
+
+    private <R> R matchPatterns(Node<T> node, RequestPath path, Function<? super T, R> selector) {
+        if (node.patterns == null) {
+            return null;
+        }
+        R result;
+        for (Route<T> route : node.patterns) {
+            if (route.pattern.matcher(path).matches() && (result = selector.apply(route.value)) != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把url正则转换为它匹配的url，用于在启动时判断一个url正则是否被另一个覆盖
+     * 如"/user/list\\.json" -> "/user/list.json"，含正则的路径段时原样返回，如"/user/.*"
+     */
+    public static String toUrl(String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return regex;
+        }
+        String[] segments = split(regex);
+        StringBuilder sb = new StringBuilder(regex.length());
+        for (int i = 0; i < segments.length; i++) {
+            if (classify(segments[i]) == REGEX) {
+                return regex;
+            }
+            if (i > 0) {
+                sb.append('/');
+            }
+            sb.append(unescape(segments[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * url正则或url模板能匹配的所有url共同的字面量前缀，如"/user/{id}" -> "/user/"，"/user/[0-9]+" -> "/user/"，"/a(b|c)" -> "/a"
+     * 纯字面量的url正则(如"/user/list\\.json")返回它唯一匹配的url
+     */
+    public static String literalPrefix(String regex) {
+        return unescape(regex.substring(0, literalPrefixEnd(regex)));
+    }
+
+    /**
+     * @return url正则是否只匹配一个url(不含正则元字符，"."也要转义)，该url即literalPrefix(regex)
+     */
+    public static boolean isLiteral(String regex) {
+        return literalPrefixEnd(regex) == regex.length();
+    }
+
+    /**
+     * 启动时判断url正则pattern是否匹配url正则regex能匹配的每一个url：
+     * 两者相同，或pattern为"字面量前缀.*"且此前缀也是regex的字面量前缀，如"/user/.*"覆盖"/user/{id}"
+     */
+    public static boolean covers(String pattern, String regex) {
+        if (pattern.equals(regex)) {
+            return true;
+        }
+        if (!pattern.endsWith(".*") || PathTemplate.isTemplate(pattern)) {
+            return false;
+        }
+        int end = literalPrefixEnd(pattern);
+        return end == pattern.length() - 2 && literalPrefix(regex).startsWith(unescape(pattern.substring(0, end)));
+    }
+
+    /**
+     * 启动时判断两个url正则是否不可能匹配同一个url：两者的字面量前缀互不为前缀，如"/admin/.*"与"/user/{id}"
+     */
+    public static boolean disjoint(String regex1, String regex2) {
+        String prefix1 = literalPrefix(regex1);
+        String prefix2 = literalPrefix(regex2);
+        return !prefix1.startsWith(prefix2) && !prefix2.startsWith(prefix1);
+    }
+
+    //字面量前缀在url正则中的结束位置,前缀后面紧跟量词时,量词修饰的最后一个字符不属于前缀
+    private static int literalPrefixEnd(String regex) {
+        if (PathTemplate.isTemplate(regex)) {
+            return regex.indexOf('{');
+        }
+        if (hasTopLevelAlternation(regex)) {
+            return 0;
+        }
+        //最后一个字面量字符(含转义符)的起始位置
+        int last = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return i;
+                }
+                last = i++;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return isQuantifier(c) ? last : i;
+            } else {
+                last = i;
+            }
+        }
+        return regex.length();
+    }
+
+    //按"/"切分，保留末尾的空串，如"/a/" -> ["", "a", ""]
+    private static String[] split(String str) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) == '/') {
+                segments.add(str.substring(start, i));
+                start = i + 1;
+            }
+        }
+        segments.add(str.substring(start));
+        return segments.toArray(new String[0]);
+    }
+
+    //判断路径段是纯字面量、只含"."元字符还是其他正则
+    private static int classify(String segment) {
+        int kind = STRICT;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '\\') {
+                //只有转义的非字母数字字符(如"\.")是字面量，"\d"、"\Q"等都是正则
+                if (i + 1 >= segment.length() || Character.isLetterOrDigit(segment.charAt(i + 1))) {
+                    return REGEX;
+                }
+                i++;
+            } else if (c == '.') {
+                kind = DOT;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return REGEX;
+            }
+        }
+        return kind;
+    }
+
+    //去除转义符，"."按字面量处理，如"a\.b" -> "a.b"
+    private static String unescape(String segment) {
+        if (segment.indexOf('\\') < 0) {
+            return segment;
+        }
+        StringBuilder sb = new StringBuilder(segment.length());
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '\\') {
+                c = segment.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    //是否有不在分组和字符类中的"|"
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') inClass = false;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //trie的节点
+    private static class Node<T> {
+        //下一个字面量路径段 -> 子节点,开放寻址的哈希表,请求时按路径段在RequestPath中的偏移量查找,不创建子串
+        private String[] keys;
+        private Node<T>[] nodes;
+        private int size;
+        //字面量完全匹配到此节点的路由对象
+        private T exact;
+        //以此节点为最长字面量前缀的正则，按注册顺序匹配
+        private List<Route<T>> patterns;
+        //下一个路径段为url模板中的变量 -> 变量节点，前后缀越长越具体，排在越前面
+        private List<Variable<T>> variables;
+
+        private Node<T> child(String segment) {
+            if (keys == null || size * 2 >= keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = spread(segment.hashCode()) & mask;
+            for (; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].equals(segment)) {
+                    return nodes[i];
+                }
+            }
+            keys[i] = segment;
+            nodes[i] = new Node<>();
+            size++;
+            return nodes[i];
+        }
+
+        //查找path中[from, to)的路径段对应的子节点,没有返回null
+        private Node<T> child(RequestPath path, int from, int to) {
+            if (keys == null) {
+                return null;
+            }
+            int mask = keys.length - 1;
+            for (int i = spread(path.hash(from, to)) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (path.regionEquals(from, to, keys[i])) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            Node<T>[] oldNodes = nodes;
+            keys = new String[oldKeys == null ? 4 : oldKeys.length * 2];
+            nodes = newNodes(keys.length);
+            if (oldKeys == null) {
+                return;
+            }
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = spread(oldKeys[j].hashCode()) & mask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    nodes[i] = oldNodes[j];
+                }
+            }
+        }
+
+        //不能直接创建泛型数组,创建通配符类型的数组后转型
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newNodes(int length) {
+            return (Node<T>[]) new Node<?>[length];
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        //前后缀相同的变量匹配相同的路径段,共用一个节点
+        private Node<T> variable(String prefix, String suffix) {
+            if (variables == null) {
+                variables = new ArrayList<>();
+            }
+            int i = 0;
+            for (; i < variables.size(); i++) {
+                Variable<T> variable = variables.get(i);
+                if (variable.prefix.equals(prefix) && variable.suffix.equals(suffix)) {
+                    return variable.node;
+                }
+                if (variable.prefix.length() + variable.suffix.length() < prefix.length() + suffix.length()) {
+                    break;
+                }
+            }
+            Variable<T> variable = new Variable<>(prefix, suffix);
+            variables.add(i, variable);
+            return variable.node;
+        }
+
+        //添加正则，返回已经以相同正则注册的路由对象
+        private T addPattern(String regex, T value) {
+            if (patterns == null) {
+                patterns = new ArrayList<>();
+            }
+            for (Route<T> route : patterns) {
+                if (route.pattern.pattern().equals(regex)) {
+                    return route.value;
+                }
+            }
+            patterns.add(new Route<>(Pattern.compile(regex), value));
+            return null;
+        }
+    }
+
+    //url模板中的一个变量路径段："前缀{变量名}后缀"
+    private static class Variable<T> {
+        private final String prefix;
+        private final String suffix;
+        private final Node<T> node = new Node<>();
+
+        private Variable(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        //path中[from, to)的路径段是否匹配,变量的值不能为空
+        private boolean matches(RequestPath path, int from, int to) {
+            return to - from > prefix.length() + suffix.length()
+                    && path.regionEquals(from, from + prefix.length(), prefix)
+                    && path.regionEquals(to - suffix.length(), to, suffix);
+        }
+    }
+
+    private static class Route<T> {
+        private final Pattern pattern;
+        private final T value;
+
+        private Route(Pattern pattern, T value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+}
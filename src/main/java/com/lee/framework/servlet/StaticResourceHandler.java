@@ -0,0 +1,461 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 静态资源(css、js、图片等)处理器，在dispatcher的service()中最先调用，静态资源请求不经过路由、参数绑定和反射调用
+ * 1、小文件的内容缓存在内存中；超过static.cacheFileBytes的大文件(或内存缓存已满时)只缓存元数据，
+ *    Tomcat支持sendfile时交给容器零拷贝发送，否则每次请求用FileChannel.transferTo从文件读取(由操作系统的页缓存加速)
+ *    大文件不长期映射到内存：被映射的文件在磁盘上被截断后，访问映射的内存会导致SIGBUS/InternalError
+ * 2、支持单个Range请求(206/416)、Last-Modified/If-Modified-Since、ETag/If-None-Match(304)、If-Range，输出配置的Cache-Control
+ * 3、防止目录遍历：拒绝"."开头(含"..")的路径段、"\"、编码的"/"和控制字符，文件的真实路径(解析符号链接后)必须在根目录内
+ * 文件的元数据和内容只在第一次请求时读取，之后每隔static.checkInterval毫秒最多检查一次文件是否被修改，请求时不再读取文件系统
+ */
+final class StaticResourceHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResourceHandler.class);
+
+    //配置文件中的参数名
+    static final String STATIC_PATH = "static.path";
+    static final String STATIC_LOCATION = "static.location";
+    static final String STATIC_CACHE_CONTROL = "static.cacheControl";
+    static final String STATIC_CACHE_FILE_BYTES = "static.cacheFileBytes";
+    static final String STATIC_CACHE_MAX_BYTES = "static.cacheMaxBytes";
+    static final String STATIC_CHECK_INTERVAL = "static.checkInterval";
+
+    //Tomcat的sendfile支持:请求属性中有SENDFILE_SUPPORT时,设置文件名和范围后由容器零拷贝发送
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    //servletContext没有配置的扩展名对应的内容类型
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html");
+        CONTENT_TYPES.put("htm", "text/html");
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("mjs", "application/javascript");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("map", "application/json");
+        CONTENT_TYPES.put("txt", "text/plain");
+        CONTENT_TYPES.put("xml", "application/xml");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("wasm", "application/wasm");
+    }
+
+    //静态资源的url前缀,不以"/"结尾,如"/static"
+    private final String path;
+    //静态资源的根目录(真实路径)
+    private final Path root;
+    //Cache-Control响应头,为null时不输出
+    private final String cacheControl;
+    //不超过此字节数的文件缓存在内存中
+    private final long cacheFileBytes;
+    //内存中缓存的文件内容的总字节数上限
+    private final long cacheMaxBytes;
+    //检查文件是否被修改的间隔(毫秒),小于0表示不检查
+    private final long checkInterval;
+    private final ServletContext servletContext;
+
+    // key：规范化后的相对路径,如"/css/a.css"  value：资源
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+    //内存中缓存的文件内容的总字节数
+    private final AtomicLong cachedBytes = new AtomicLong();
+    //每个线程复用的路径缓冲区
+    private final ThreadLocal<RequestPath> requestPaths = ThreadLocal.withInitial(RequestPath::new);
+
+    private StaticResourceHandler(String path, Path root, Properties config, ServletContext servletContext) {
+        this.path = path;
+        this.root = root;
+        String cacheControl = config.getProperty(STATIC_CACHE_CONTROL, "").trim();
+        this.cacheControl = cacheControl.isEmpty() ? null : cacheControl;
+        this.cacheFileBytes = Long.parseLong(config.getProperty(STATIC_CACHE_FILE_BYTES, "65536").trim());
+        this.cacheMaxBytes = Long.parseLong(config.getProperty(STATIC_CACHE_MAX_BYTES, "16777216").trim());
+        this.checkInterval = Long.parseLong(config.getProperty(STATIC_CHECK_INTERVAL, "5000").trim());
+        this.servletContext = servletContext;
+    }
+
+    /**
+     * @param servletContext 用于按扩展名获取内容类型，可以为null
+     * @return 没有配置static.path，或根目录不存在时返回null
+     */
+    static StaticResourceHandler create(Properties config, ServletContext servletContext) {
+        String path = config.getProperty(STATIC_PATH, "").trim();
+        if (path.isEmpty()) {
+            return null;
+        }
+        path = ("/" + path).replaceAll("/+", "/");
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        //绝对路径为文件系统中的目录,否则为classpath中的目录
+        String location = config.getProperty(STATIC_LOCATION, "static").trim();
+        File dir = new File(location);
+        if (!dir.isAbsolute()) {
+            URL url = StaticResourceHandler.class.getClassLoader().getResource(location);
+            dir = null;
+            if (url != null && !"file".equals(url.getProtocol())) {
+                //如jar:中的目录,不能按文件读取和零拷贝发送
+                logger.warn("static resource location " + location + " is not a file system directory: " + url);
+                return null;
+            }
+            if (url != null) {
+                try {
+                    //url中的空格、中文等是编码过的,不能直接用url.getFile()
+                    dir = Paths.get(url.toURI()).toFile();
+                } catch (URISyntaxException e) {
+                    throw new IllegalStateException("invalid static resource location " + url, e);
+                }
+            }
+        }
+        if (dir == null || !dir.isDirectory()) {
+            logger.warn("static resource location not found: " + location);
+            return null;
+        }
+        try {
+            Path root = dir.toPath().toRealPath();
+            logger.info("static resources: " + path + "/** -> " + root);
+            return new StaticResourceHandler(path, root, config, servletContext);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot resolve static resource location " + location, e);
+        }
+    }
+
+    /**
+     * 处理静态资源请求
+     *
+     * @return 请求的url不在静态资源的url前缀下时返回false，交给dispatcher处理
+     */
+    boolean handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String uri = req.getRequestURI();
+        String contextPath = req.getContextPath();
+        int start = contextPath != null && uri.startsWith(contextPath) ? contextPath.length() : 0;
+        if (!uri.startsWith(path, start) || uri.length() > start + path.length() && uri.charAt(start + path.length()) != '/') {
+            return false;
+        }
+        String method = req.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            resp.setHeader("Allow", "GET, HEAD");
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return true;
+        }
+        String relative = relativePath(uri, uri.substring(0, start + path.length()));
+        Resource resource = relative == null ? null : lookup(relative);
+        if (resource == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return true;
+        }
+        serve(req, resp, resource, head);
+        return true;
+    }
+
+    /**
+     * 解码并校验相对路径
+     *
+     * @return 以"/"开头的相对路径，可能越出根目录或指向隐藏文件时返回null
+     */
+    private String relativePath(String uri, String prefix) {
+        RequestPath relative = requestPaths.get().parse(uri, prefix, false, true);
+        if (relative.length() <= 1) {
+            return null;
+        }
+        for (int i = 0; i < relative.length(); i++) {
+            char c = relative.charAt(i);
+            //"%2F"解码后保持原样,"%"只会出现在编码的"/"或不合法的转义中
+            if (c < 0x20 || c == 0x7F || c == '\\' || c == '%' || c == ':') {
+                return null;
+            }
+        }
+        for (int segment = 1; segment < relative.getSegmentCount(); segment++) {
+            int from = relative.segmentStart(segment);
+            //"."开头的路径段:".."、"."、隐藏文件(如".git")
+            if (from < relative.length() && relative.charAt(from) == '.') {
+                return null;
+            }
+        }
+        return relative.toString();
+    }
+
+    //获取资源,不存在返回null;资源过了检查间隔时检查文件是否被修改
+    private Resource lookup(String relative) throws IOException {
+        Resource resource = resources.get(relative);
+        long now = System.currentTimeMillis();
+        if (resource != null && (checkInterval < 0 || now < resource.checkAt)) {
+            return resource;
+        }
+        Path file = root.resolve(relative.substring(1));
+        BasicFileAttributes attributes;
+        Path real;
+        try {
+            //解析符号链接后的真实路径必须在根目录内
+            real = file.toRealPath();
+            attributes = Files.readAttributes(real, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            release(resources.remove(relative));
+            return null;
+        }
+        if (!real.startsWith(root) || !attributes.isRegularFile()) {
+            release(resources.remove(relative));
+            return null;
+        }
+        if (resource != null && resource.length == attributes.size()
+                && resource.lastModified == attributes.lastModifiedTime().toMillis()) {
+            resource.checkAt = now + checkInterval;
+            return resource;
+        }
+        Resource loaded = load(real, attributes, now);
+        release(resources.put(relative, loaded));
+        return loaded;
+    }
+
+    //读取文件:小文件读入内存,大文件在请求时再读取
+    private Resource load(Path file, BasicFileAttributes attributes, long now) throws IOException {
+        long length = attributes.size();
+        byte[] bytes = null;
+        if (length <= cacheFileBytes && cachedBytes.addAndGet(length) <= cacheMaxBytes) {
+            bytes = Files.readAllBytes(file);
+            if (bytes.length != length) {
+                //读取时文件被修改,按实际读到的内容计算
+                cachedBytes.addAndGet(bytes.length - length);
+                length = bytes.length;
+            }
+        } else if (length <= cacheFileBytes) {
+            //内存缓存已满
+            cachedBytes.addAndGet(-length);
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        return new Resource(file, contentType(file.getFileName().toString()), length, lastModified, bytes,
+                checkInterval < 0 ? Long.MAX_VALUE : now + checkInterval);
+    }
+
+    private void release(Resource resource) {
+        if (resource != null && resource.bytes != null) {
+            cachedBytes.addAndGet(-resource.bytes.length);
+        }
+    }
+
+    private void serve(HttpServletRequest req, HttpServletResponse resp, Resource resource, boolean head) throws IOException {
+        resp.setContentType(resource.contentType);
+        resp.setDateHeader("Last-Modified", resource.lastModified);
+        resp.setHeader("ETag", resource.etag);
+        resp.setHeader("Accept-Ranges", "bytes");
+        if (cacheControl != null) {
+            resp.setHeader("Cache-Control", cacheControl);
+        }
+        if (notModified(req, resource)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long length = resource.length;
+        long from = 0;
+        long to = length - 1;
+        String range = req.getHeader("Range");
+        if (range != null && ifRangeMatches(req, resource)) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == UNSATISFIABLE) {
+                resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                resp.setHeader("Content-Range", "bytes */" + length);
+                return;
+            }
+            if (parsed != null) {
+                from = parsed[0];
+                to = parsed[1];
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader("Content-Range", "bytes " + from + "-" + to + "/" + length);
+            }
+        }
+        long count = to - from + 1;
+        resp.setContentLengthLong(count);
+        if (head || count == 0) {
+            return;
+        }
+        if (resource.bytes != null) {
+            resp.getOutputStream().write(resource.bytes, (int) from, (int) count);
+            return;
+        }
+        //容器支持sendfile时由容器零拷贝发送,不经过输出流
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            req.setAttribute(SENDFILE_FILENAME, resource.file.toString());
+            req.setAttribute(SENDFILE_START, from);
+            req.setAttribute(SENDFILE_END, to + 1);
+            return;
+        }
+        //目标不是FileChannel/SocketChannel,transferTo按块读取文件后写入输出流,不映射文件
+        WritableByteChannel channel = Channels.newChannel(resp.getOutputStream());
+        try (FileChannel file = FileChannel.open(resource.file)) {
+            for (long position = from; position <= to; ) {
+                long transferred = file.transferTo(position, to + 1 - position, channel);
+                if (transferred <= 0) {
+                    //文件在检查间隔内被截断,已输出的长度与Content-Length不符,只能中断响应
+                    throw new IOException("static resource " + resource.file + " was truncated while being sent");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    //If-None-Match优先于If-Modified-Since
+    private static boolean notModified(HttpServletRequest req, Resource resource) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(resource.etag);
+        }
+        try {
+            long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+            //http日期精确到秒
+            return ifModifiedSince >= 0 && resource.lastModified / 1000 * 1000 <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    //没有If-Range,或If-Range与当前的ETag/Last-Modified相同时才按Range返回部分内容
+    private static boolean ifRangeMatches(HttpServletRequest req, Resource resource) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(resource.etag);
+        }
+        try {
+            return req.getDateHeader("If-Range") == resource.lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    //不能满足的Range
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * 解析单个Range："bytes=from-to"、"bytes=from-"、"bytes=-suffixLength"
+     *
+     * @return [from, to]；格式错误或有多个范围时返回null(忽略Range，返回完整内容)；不能满足时返回UNSATISFIABLE
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.regionMatches(true, 0, "bytes=", 0, 6) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        long first = parseLong(spec.substring(0, dash).trim());
+        long last = parseLong(spec.substring(dash + 1).trim());
+        if (dash == 0) {
+            //最后suffixLength个字节
+            if (last < 0) {
+                return null;
+            }
+            if (last == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{Math.max(0, length - last), length - 1};
+        }
+        if (first < 0 || dash < spec.length() - 1 && (last < 0 || last < first)) {
+            return null;
+        }
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        return new long[]{first, last < 0 || last >= length ? length - 1 : last};
+    }
+
+    //非负整数,格式错误或为空返回-1
+    private static long parseLong(String s) {
+        if (s.isEmpty() || s.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private String contentType(String fileName) {
+        String contentType = servletContext == null ? null : servletContext.getMimeType(fileName);
+        if (contentType == null) {
+            int dot = fileName.lastIndexOf('.');
+            contentType = dot < 0 ? null : CONTENT_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        //文本类型按UTF-8输出
+        if (!contentType.contains("charset") && (contentType.startsWith("text/") || contentType.endsWith("javascript")
+                || contentType.endsWith("json") || contentType.endsWith("xml"))) {
+            return contentType + ";charset=UTF-8";
+        }
+        return contentType;
+    }
+
+    /**
+     * 一个静态文件的元数据和内容，加载后不再改变(除了下次检查的时间)，文件被修改时整体替换
+     */
+    private static final class Resource {
+        private final Path file;
+        private final String contentType;
+        private final long length;
+        private final long lastModified;
+        //由长度和修改时间生成,文件被修改时改变
+        private final String etag;
+        //内存中缓存的内容,大文件为null
+        private final byte[] bytes;
+        //下次检查文件是否被修改的时间
+        private volatile long checkAt;
+
+        private Resource(Path file, String contentType, long length, long lastModified, byte[] bytes, long checkAt) {
+            this.file = file;
+            this.contentType = contentType;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            this.bytes = bytes;
+            this.checkAt = checkAt;
+        }
+    }
+}
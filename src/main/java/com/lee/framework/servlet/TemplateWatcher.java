@@ -0,0 +1,232 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模板热加载：后台线程通过WatchService监听模板根目录(包括子目录)，只重新编译被增加、修改的模板，被删除的模板从ViewRegistry中移除
+ * 请求时不读取文件系统，也不检查模板文件的修改时间；编译失败时保留原来的模板
+ * 编辑器保存一次文件通常产生多个事件，收到事件后再等待templateWatch.delay毫秒，合并期间的事件后每个文件只编译一次
+ * 事件丢失(OVERFLOW)时重新扫描整个根目录，重新编译现有的模板并移除文件已不存在的视图
+ */
+final class TemplateWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateWatcher.class);
+
+    //配置文件中的参数名
+    static final String TEMPLATE_WATCH = "templateWatch";
+    static final String TEMPLATE_WATCH_DELAY = "templateWatch.delay";
+
+    private final Path root;
+    private final ViewRegistry viewRegistry;
+    //合并事件的等待时间(毫秒)
+    private final long delay;
+    private final WatchService watchService;
+    // key：监听的目录  value：WatchKey
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Thread thread;
+
+    private TemplateWatcher(Path root, ViewRegistry viewRegistry, long delay) throws IOException {
+        this.root = root;
+        this.viewRegistry = viewRegistry;
+        this.delay = delay;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerAll(root);
+        this.thread = new Thread(this, "template-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 开始在后台监听模板根目录
+     *
+     * @return 没有开启templateWatch，或不能监听时返回null
+     */
+    static TemplateWatcher start(Properties config, File rootDir, ViewRegistry viewRegistry) {
+        if (!Boolean.parseBoolean(config.getProperty(TEMPLATE_WATCH, "false").trim())) {
+            return null;
+        }
+        long delay = Long.parseLong(config.getProperty(TEMPLATE_WATCH_DELAY, "20").trim());
+        try {
+            TemplateWatcher watcher = new TemplateWatcher(rootDir.toPath().toAbsolutePath().normalize(), viewRegistry, delay);
+            watcher.thread.start();
+            logger.info("templateWatch: " + watcher.root);
+            return watcher;
+        } catch (IOException e) {
+            logger.warn("cannot watch template root " + rootDir + " : " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 停止监听
+     */
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("cannot close template watcher", e);
+        }
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                //一批事件中被增加或修改的文件、被删除的路径,按发生顺序
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> deleted = new LinkedHashSet<>();
+                try {
+                    boolean overflow = poll(watchService.take(), changed, deleted);
+                    for (WatchKey key; (key = watchService.poll(delay, TimeUnit.MILLISECONDS)) != null; ) {
+                        overflow |= poll(key, changed, deleted);
+                    }
+                    if (overflow) {
+                        //事件丢失,重新扫描整个根目录:重新编译所有模板,移除文件已不存在的视图
+                        changed.clear();
+                        deleted.clear();
+                        rescan(changed);
+                    }
+                } catch (IOException e) {
+                    //如新建的目录随即被删除,已收集的事件照常处理
+                    logger.warn("cannot watch template directory : " + e);
+                }
+                apply(changed, deleted);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //close()
+        }
+    }
+
+    /**
+     * 取出WatchKey中的事件
+     *
+     * @return 是否有事件丢失(OVERFLOW)
+     */
+    private boolean poll(WatchKey key, Set<Path> changed, Set<Path> deleted) throws IOException {
+        boolean overflow = false;
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed.remove(path);
+                deleted.add(path);
+            } else if (Files.isDirectory(path)) {
+                //新建的目录:监听它,并加载其中已有的文件(监听前创建的文件没有事件)
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    registerAll(path);
+                    collectFiles(path, changed);
+                }
+            } else {
+                deleted.remove(path);
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            //目录被删除
+            keys.remove(dir);
+        }
+        return overflow;
+    }
+
+    //先移除被删除的模板,再编译被增加或修改的模板
+    private void apply(Set<Path> changed, Set<Path> deleted) {
+        for (Path path : deleted) {
+            String viewName = viewName(path);
+            //不知道被删除的是文件还是目录,两者都移除
+            viewRegistry.remove(viewName);
+            viewRegistry.remove(viewName + "/");
+            WatchKey key = keys.remove(path);
+            if (key != null) {
+                key.cancel();
+            }
+        }
+        for (Path path : changed) {
+            if (!ViewRegistry.isTemplateFile(path.getFileName().toString()) || !Files.isRegularFile(path)) {
+                continue;
+            }
+            String viewName = viewName(path);
+            try {
+                viewRegistry.reload(viewName, path.toFile());
+                logger.info("template reloaded: " + viewName);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("cannot reload template " + viewName + " : " + e);
+            }
+        }
+    }
+
+    //重新监听所有目录并收集所有文件,停止监听已不存在的目录,移除没有文件的视图
+    private void rescan(Set<Path> changed) throws IOException {
+        keys.entrySet().removeIf(entry -> {
+            if (Files.isDirectory(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().cancel();
+            return true;
+        });
+        registerAll(root);
+        collectFiles(root, changed);
+        Set<String> viewNames = new HashSet<>();
+        for (Path path : changed) {
+            if (ViewRegistry.isTemplateFile(path.getFileName().toString())) {
+                viewNames.add(viewName(path));
+            }
+        }
+        viewRegistry.retain(viewNames);
+    }
+
+    //相对模板根目录的路径,与ViewRegistry.load()的视图名一致,总是使用"/"
+    private String viewName(Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    //监听目录及其所有子目录
+    private void registerAll(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!keys.containsKey(dir)) {
+                    keys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    //目录下的所有文件
+    private static void collectFiles(Path dir, Set<Path> files) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
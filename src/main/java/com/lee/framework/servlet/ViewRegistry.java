@@ -0,0 +1,221 @@
+package com.lee.framework.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 视图注册表：视图名 -> 视图解析器，查找视图只需一次map查询，与模板数量无关
+ * 1、递归加载模板根目录下的所有模板，视图名为相对根目录的路径，如"user/list.myml"
+ * 2、同时以去掉viewPrefix前缀和扩展名的逻辑视图名注册，如"user/list"
+ * 3、同一个逻辑视图名可能对应多个不同扩展名(内容类型)的模板，组成解析器链，按请求的Accept选择
+ * 4、加载时即编译所有模板；运行时模板的增加、修改、删除由TemplateWatcher调用reload()/remove()，每次只替换一个视图
+ */
+public class ViewRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ViewRegistry.class);
+
+    //配置文件中的参数名
+    static final String VIEW_PREFIX = "viewPrefix";
+    static final String VIEW_CONTENT_TYPE = "viewContentType.";
+
+    //未配置内容类型的模板默认为html
+    private static final String DEFAULT_CONTENT_TYPE = "text/html;charset=UTF-8";
+
+    // key：视图名  value：解析器链，大部分只有一个
+    private final Map<String, ViewResolver[]> views = new ConcurrentHashMap<>();
+
+    //逻辑视图名要去掉的前缀
+    private final String prefix;
+    // key：模板扩展名(不含".")  value：内容类型
+    private final Map<String, String> contentTypes = new HashMap<>();
+
+    public ViewRegistry(Properties config) {
+        this.prefix = config.getProperty(VIEW_PREFIX, "");
+        contentTypes.put("myml", DEFAULT_CONTENT_TYPE);
+        for (String key : config.stringPropertyNames()) {
+            if (key.startsWith(VIEW_CONTENT_TYPE)) {
+                contentTypes.put(key.substring(VIEW_CONTENT_TYPE.length()), config.getProperty(key).trim());
+            }
+        }
+    }
+
+    /**
+     * 递归加载目录下的所有模板文件并编译
+     *
+     * @param rootDir 模板根目录
+     */
+    public void load(File rootDir) {
+        load(rootDir, "");
+    }
+
+    private void load(File dir, String path) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        //按文件名排序,保证解析器链的顺序稳定
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                load(file, path + file.getName() + "/");
+            } else if (isTemplateFile(file.getName())) {
+                ViewResolver viewResolver = new ViewResolver(path + file.getName(), file, contentTypeOf(file.getName()));
+                try {
+                    viewResolver.reload();
+                } catch (IOException | RuntimeException e) {
+                    //编译失败的模板仍然注册,请求时报告此错误而不再编译,模板被修改后由TemplateWatcher重新编译
+                    logger.warn("cannot compile template " + file + " : " + e);
+                }
+                register(viewResolver);
+            }
+        }
+    }
+
+    /**
+     * 模板文件被增加或修改：已注册的视图重新编译并替换模板，新的模板编译后注册
+     *
+     * @param viewName 相对模板根目录的路径
+     * @throws IOException 读取失败或编译失败，原来的模板保持不变
+     */
+    public void reload(String viewName, File file) throws IOException {
+        ViewResolver[] chain = views.get(viewName);
+        if (chain != null && chain[0].getViewName().equals(viewName)) {
+            chain[0].reload();
+            return;
+        }
+        ViewResolver viewResolver = new ViewResolver(viewName, file, contentTypeOf(viewName));
+        viewResolver.reload();
+        register(viewResolver);
+    }
+
+    /**
+     * 模板文件被删除：从完整视图名、逻辑视图名和去掉前缀的视图名中移除
+     *
+     * @param viewName 相对模板根目录的路径，以"/"结尾时移除此目录下的所有视图
+     */
+    public void remove(String viewName) {
+        for (Map.Entry<String, ViewResolver[]> entry : views.entrySet()) {
+            String name = entry.getKey();
+            //只按完整视图名匹配,逻辑视图名由unregister一起移除
+            if (entry.getValue()[0].getViewName().equals(name)
+                    && (viewName.endsWith("/") ? name.startsWith(viewName) : name.equals(viewName))) {
+                unregister(entry.getValue()[0]);
+            }
+        }
+    }
+
+    /**
+     * 重新扫描模板根目录后：移除模板文件已不存在的视图
+     *
+     * @param viewNames 现有模板文件相对模板根目录的路径
+     */
+    public void retain(Set<String> viewNames) {
+        for (Map.Entry<String, ViewResolver[]> entry : views.entrySet()) {
+            String name = entry.getKey();
+            if (entry.getValue()[0].getViewName().equals(name) && !viewNames.contains(name)) {
+                unregister(entry.getValue()[0]);
+            }
+        }
+    }
+
+    private void unregister(ViewResolver viewResolver) {
+        String viewName = viewResolver.getViewName();
+        views.remove(viewName);
+        views.computeIfPresent(logicalName(viewName), (name, chain) -> without(chain, viewResolver));
+        if (!prefix.isEmpty() && viewName.startsWith(prefix)) {
+            views.computeIfPresent(viewName.substring(prefix.length()), (name, chain) -> without(chain, viewResolver));
+        }
+    }
+
+    /**
+     * 注册视图解析器，以完整视图名和逻辑视图名各注册一次
+     */
+    public void register(ViewResolver viewResolver) {
+        String viewName = viewResolver.getViewName();
+        views.put(viewName, new ViewResolver[]{viewResolver});
+        String logicalName = logicalName(viewName);
+        if (!logicalName.equals(viewName)) {
+            views.merge(logicalName, new ViewResolver[]{viewResolver}, ViewRegistry::chain);
+        }
+        //去掉前缀但保留扩展名的视图名，如"list.myml"
+        if (!prefix.isEmpty() && viewName.startsWith(prefix)) {
+            views.putIfAbsent(viewName.substring(prefix.length()), new ViewResolver[]{viewResolver});
+        }
+    }
+
+    /**
+     * 查找视图解析器
+     *
+     * @param viewName 视图名
+     * @param accept   请求头Accept，用于在解析器链中选择内容类型，可以为null
+     * @return 没有此视图返回null
+     */
+    public ViewResolver resolve(String viewName, String accept) {
+        ViewResolver[] chain = views.get(viewName);
+        if (chain == null) {
+            return null;
+        }
+        if (chain.length == 1 || accept == null) {
+            return chain[0];
+        }
+        for (ViewResolver viewResolver : chain) {
+            String contentType = viewResolver.getContentType();
+            int i = contentType.indexOf(';');
+            if (accept.contains(i < 0 ? contentType : contentType.substring(0, i))) {
+                return viewResolver;
+            }
+        }
+        return chain[0];
+    }
+
+    public boolean isEmpty() {
+        return views.isEmpty();
+    }
+
+    //由扩展名得到模板的内容类型
+    private String contentTypeOf(String viewName) {
+        int dot = viewName.lastIndexOf('.');
+        String contentType = dot < 0 ? null : contentTypes.get(viewName.substring(dot + 1));
+        return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+    }
+
+    //去掉前缀和扩展名，如"pages/user/list.myml" -> "user/list"
+    private String logicalName(String viewName) {
+        String name = viewName.startsWith(prefix) ? viewName.substring(prefix.length()) : viewName;
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') ? name.substring(0, dot) : name;
+    }
+
+    //是否当作模板加载:忽略隐藏文件和编辑器的备份文件,如".list.myml.swp"、"list.myml~"
+    static boolean isTemplateFile(String fileName) {
+        return !fileName.startsWith(".") && !fileName.endsWith("~");
+    }
+
+    //从解析器链中去掉解析器,链为空时返回null(移除此视图名)
+    private static ViewResolver[] without(ViewResolver[] chain, ViewResolver viewResolver) {
+        int n = 0;
+        ViewResolver[] rest = new ViewResolver[chain.length];
+        for (ViewResolver resolver : chain) {
+            if (resolver != viewResolver) {
+                rest[n++] = resolver;
+            }
+        }
+        return n == 0 ? null : Arrays.copyOf(rest, n);
+    }
+
+    //把解析器追加到解析器链末尾
+    private static ViewResolver[] chain(ViewResolver[] chain, ViewResolver[] added) {
+        ViewResolver[] merged = Arrays.copyOf(chain, chain.length + added.length);
+        System.arraycopy(added, 0, merged, chain.length, added.length);
+        return merged;
+    }
+}
@@ -1,61 +1,118 @@
 package com.lee.framework.servlet;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.io.File;
-import java.io.RandomAccessFile;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * 视图解析器，spring中为了支持多种模板引擎写的是接口，此处已简化
+ * 模板文件在启动加载时(或第一次渲染时)编译为MyTemplate并缓存在内存中，请求时不再读取文件，也不检查文件是否被修改
+ * 编译失败时记住错误，之后的请求直接报告此错误而不再读取、编译文件，直到reload()成功
+ * 模板文件被修改时由TemplateWatcher在后台调用reload()重新编译并整体替换模板
  */
 @Getter
-@AllArgsConstructor
 public class ViewResolver {
+
+    //渲染缓冲区超过此大小则不再复用，避免大页面长期占用内存
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    //每个线程复用的渲染缓冲区
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
     private String viewName;  //视图名
     private File file;        //模版文件
+    private String contentType;     //输出的内容类型,由模板扩展名决定
+
+    //编译后的模板,重新编译时整体替换
+    private volatile MyTemplate template;
+    //没有可用的模板时,最近一次编译失败的原因
+    private volatile Exception error;
+
+    public ViewResolver(String viewName, File file) {
+        this(viewName, file, "text/html;charset=UTF-8");
+    }
+
+    public ViewResolver(String viewName, File file, String contentType) {
+        this.viewName = viewName;
+        this.file = file;
+        this.contentType = contentType;
+    }
 
     /**
      * 解析视图，输出网页
      */
     protected String parse(MyModelAndView modelAndView) throws Exception {
-        StringBuffer sb = new StringBuffer();
-        //只读文件
-        try (RandomAccessFile ra = new RandomAccessFile(this.file, "r")) {
-            String line = null;
-            // 读入模板的每一行
-            while (null != (line = ra.readLine())) {
-                //匹配此行中的myml模板语法，此处为@{}
-                Matcher matcher = this.myMatcher(line);
-                //部分匹配，查找输入串中与模式匹配的子串
-                while (matcher.find()) {
-                    //groupCount()返回子模式匹配的结果数,包括模式@{paramName}本身编号为0，然后小括号()包装的子模式从左到右的匹配结果从1开始计数
-                    for (int i = 1; i <= matcher.groupCount(); i++) {
-                        //每一组的值就是"@{}"中的参数名
-                        String paramName = matcher.group(i);
-                        //取出后台传给前端的model中这个参数的值
-                        Object paramValue = modelAndView.getModel().get(paramName);
-                        if (null == paramValue) continue;
-                        //若参数值不为null，则模板中的所有这个"@{paramName}"替换为参数值
-                        line = line.replaceAll("@\\{" + paramName + "\\}", paramValue.toString());
+        MyTemplate template = getTemplate();
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        try {
+            template.render(modelAndView.getModel(), sb);
+            return sb.toString();
+        } finally {
+            if (sb.capacity() > MAX_BUFFER_SIZE) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * 解析视图，直接以UTF-8写入输出流，不在内存中拼接整个页面
+     *
+     * @param flushBytes 每输出超过此字节数就flush一次，0表示只在模板的"@{!flush}"处flush
+     */
+    protected void render(MyModelAndView modelAndView, OutputStream out, int flushBytes) throws IOException {
+        getTemplate().writeTo(modelAndView.getModel(), out, flushBytes);
+    }
+
+    /**
+     * 获取编译后的模板，只在从未编译过时才在第一次使用时编译
+     *
+     * @throws IOException 编译失败，不再重新编译，直到reload()成功
+     */
+    public MyTemplate getTemplate() throws IOException {
+        MyTemplate template = this.template;
+        if (template != null) {
+            return template;
+        }
+        synchronized (this) {
+            if (this.template == null) {
+                if (error == null) {
+                    try {
+                        this.template = MyTemplate.compile(file);
+                    } catch (IOException | RuntimeException e) {
+                        error = e;
                     }
                 }
-                sb.append(line);
+                if (error != null) {
+                    throw new IOException("template " + viewName + " failed to compile : " + error, error);
+                }
             }
+            return this.template;
         }
-        return sb.toString();
     }
 
-    //返回匹配自定义模板语法的正则匹配器，此处自定义模板".myml"文件语法为"@{}"
-    private Matcher myMatcher(String str) {
-        // 模式中用()来表示捕获组，并且根据圆括号从左到右来编号。一个给定的正则表达式完整部分编号为0，然后()从左到右分别从1开始计数。我们可以得到任意捕获组的内容
-        // 在量词后面加上一个问号就是非贪婪模式:一旦匹配成功不再向右尝试
-        // (.+?)表示分组匹配"@{}"模式的字符串,"@{}"中的字符可以一个或多个
-        Pattern pattern = Pattern.compile("@\\{(.+?)\\}", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(str);
-        return matcher;
+    /**
+     * 重新编译模板文件并替换当前的模板，正在渲染的请求继续使用原来的模板；编译失败时抛出异常，保留原来的模板
+     * 还没有可用的模板时记住失败原因，请求时直接报告
+     */
+    public void reload() throws IOException {
+        MyTemplate compiled;
+        try {
+            compiled = MyTemplate.compile(file);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (this.template == null) {
+                    error = e;
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            this.template = compiled;
+            this.error = null;
+        }
     }
 
-}
\ No newline at end of file
+}
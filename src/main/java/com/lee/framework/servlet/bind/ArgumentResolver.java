@@ -0,0 +1,22 @@
+package com.lee.framework.servlet.bind;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 解析handler方法第index个参数的值，在initHandlerAdapters时为每个参数创建一个
+ * 请求时只需按参数顺序依次调用，不再遍历请求参数
+ */
+@FunctionalInterface
+public interface ArgumentResolver {
+
+    ArgumentResolver REQUEST = (req, resp) -> req;
+
+    ArgumentResolver RESPONSE = (req, resp) -> resp;
+
+    //没有标注注解的参数注入null
+    ArgumentResolver NULL = (req, resp) -> null;
+
+    Object resolve(HttpServletRequest req, HttpServletResponse resp) throws Exception;
+
+}
@@ -0,0 +1,153 @@
+package com.lee.framework.servlet.bind;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.time.DateTimeException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 把请求参数(查询参数、表单参数)绑定到POJO：请求参数名与属性名相同时，转为属性的类型后调用public的setter或给public字段赋值
+ * 每个类只在启动时解析一次(见ConverterRegistry.getBeanBinder)：构造方法和setter解析为MethodHandle，并选好每个属性的转换器，
+ * 请求时只按属性逐个取请求参数，不再使用反射
+ */
+public class BeanBinder {
+
+    private final Class<?> type;
+    //统一适配为()Object
+    private final MethodHandle constructor;
+    private final Property[] properties;
+
+    BeanBinder(Class<?> type, ConverterRegistry converterRegistry) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        // key：属性名  value：属性,setter优先于同名的public字段
+        Map<String, Property> properties = new LinkedHashMap<>();
+        try {
+            this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            for (Field field : type.getFields()) {
+                int modifiers = field.getModifiers();
+                ConverterRegistry.ValueConverter converter = converter(converterRegistry, field.getType(), field.getGenericType());
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && converter != null) {
+                    properties.put(field.getName(), new Property(field.getName(), lookup.unreflectSetter(field), converter));
+                }
+            }
+            for (Method method : type.getMethods()) {
+                String name = propertyName(method);
+                ConverterRegistry.ValueConverter converter = name == null ? null
+                        : converter(converterRegistry, method.getParameterTypes()[0], method.getGenericParameterTypes()[0]);
+                if (converter != null) {
+                    properties.put(name, new Property(name, lookup.unreflect(method), converter));
+                }
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("cannot bind " + type.getName() + " : no public no-arg constructor", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot bind " + type.getName(), e);
+        }
+        this.properties = properties.values().toArray(new Property[0]);
+    }
+
+    /**
+     * 创建对象并绑定请求中与属性同名的参数，请求中没有的属性保持构造后的值
+     */
+    public Object bind(HttpServletRequest req) throws Exception {
+        Object bean;
+        try {
+            bean = (Object) constructor.invokeExact();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("cannot instantiate " + type.getName(), t);
+        }
+        for (Property property : properties) {
+            String[] values = req.getParameterValues(property.name);
+            if (values == null) {
+                continue;
+            }
+            Object value;
+            try {
+                value = property.converter.convert(values);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new RequestBindingException(HttpServletResponse.SC_BAD_REQUEST,
+                        "Invalid value for property '" + property.name + "' of " + type.getSimpleName(), e);
+            }
+            try {
+                property.setter.invokeExact(bean, value);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return bean;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return 是否按POJO绑定此类型：不是JDK中的类型，有public的无参构造方法，且没有注册此类型的转换器
+     */
+    static boolean isBindable(Class<?> type, ConverterRegistry converterRegistry) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum()
+                || Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())
+                || type.getName().startsWith("java.") || type.getName().startsWith("javax.")
+                || converterRegistry.getConverter(type) != null) {
+            return false;
+        }
+        try {
+            type.getConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    //没有转换器的属性(如嵌套的对象、Map)不从请求参数绑定
+    private static ConverterRegistry.ValueConverter converter(ConverterRegistry converterRegistry, Class<?> type, Type genericType) {
+        try {
+            return converterRegistry.getValueConverter(type, genericType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    //由setter方法名得到属性名，不是setter返回null
+    private static String propertyName(Method method) {
+        String name = method.getName();
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1
+                || !name.startsWith("set") || name.length() == 3) {
+            return null;
+        }
+        //与java.beans.Introspector一致，"URL"保持不变
+        if (name.length() > 4 && Character.isUpperCase(name.charAt(4)) && Character.isUpperCase(name.charAt(3))) {
+            return name.substring(3);
+        }
+        return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+    }
+
+    private static class Property {
+        //请求参数名
+        private final String name;
+        //统一适配为(Object,Object)void
+        private final MethodHandle setter;
+        //把请求参数的所有值转为属性类型的转换器
+        private final ConverterRegistry.ValueConverter converter;
+
+        private Property(String name, MethodHandle setter, ConverterRegistry.ValueConverter converter) {
+            this.name = name;
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.converter = converter;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.lee.framework.servlet.bind;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 解析没有标注注解的POJO参数：把查询参数和表单参数按属性名绑定到新创建的对象
+ * 属性的setter和转换器在启动时由BeanBinder解析一次，请求时不再使用反射
+ */
+public class BeanParamResolver implements ArgumentResolver {
+
+    private final BeanBinder beanBinder;
+
+    public BeanParamResolver(BeanBinder beanBinder) {
+        this.beanBinder = beanBinder;
+    }
+
+    @Override
+    public Object resolve(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        return beanBinder.bind(req);
+    }
+}
@@ -0,0 +1,17 @@
+package com.lee.framework.servlet.bind;
+
+/**
+ * 把请求参数的单个String值转为目标类型
+ * 自定义类型转换只需在ioc容器中注册实现此接口的bean，泛型参数T即为目标类型
+ *
+ * @param <T> 目标类型
+ */
+@FunctionalInterface
+public interface Converter<T> {
+
+    /**
+     * @param source 请求参数值，不为null
+     */
+    T convert(String source) throws Exception;
+
+}
@@ -0,0 +1,242 @@
+package com.lee.framework.servlet.bind;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型转换器注册表，保存 目标类型 -> Converter 的映射
+ * 默认支持String、基本类型及其包装类、BigDecimal/BigInteger、枚举、Date/LocalDate/LocalDateTime/LocalTime，
+ * 以及以上类型的数组和List/Set
+ * 在initHandlerAdapters时为每个参数选好ValueConverter，请求时不再按类型判断
+ * 同时缓存每个POJO类型的BeanBinder，用于把表单参数绑定到POJO的属性
+ */
+public class ConverterRegistry {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // key：目标类型(基本类型使用其包装类)  value：转换器
+    private final Map<Class<?>, Converter<?>> converters = new ConcurrentHashMap<>();
+    // key：POJO类型  value：把请求参数绑定到此类型的绑定器,每个类只解析一次
+    private final Map<Class<?>, BeanBinder> beanBinders = new ConcurrentHashMap<>();
+
+    public ConverterRegistry() {
+        register(String.class, s -> s);
+        register(Integer.class, s -> Integer.valueOf(s.trim()));
+        register(Long.class, s -> Long.valueOf(s.trim()));
+        register(Short.class, s -> Short.valueOf(s.trim()));
+        register(Byte.class, s -> Byte.valueOf(s.trim()));
+        register(Double.class, s -> Double.valueOf(s.trim()));
+        register(Float.class, s -> Float.valueOf(s.trim()));
+        register(Character.class, s -> s.charAt(0));
+        register(Boolean.class, ConverterRegistry::toBoolean);
+        register(BigDecimal.class, s -> new BigDecimal(s.trim()));
+        register(BigInteger.class, s -> new BigInteger(s.trim()));
+        register(LocalDate.class, s -> LocalDate.parse(s.trim()));
+        register(LocalTime.class, s -> LocalTime.parse(s.trim()));
+        register(LocalDateTime.class, ConverterRegistry::toLocalDateTime);
+        register(Date.class, ConverterRegistry::toDate);
+    }
+
+    /**
+     * 注册(或覆盖)一个类型的转换器
+     */
+    public <T> void register(Class<T> type, Converter<? extends T> converter) {
+        converters.put(type, converter);
+    }
+
+    /**
+     * 获取单个值的转换器，枚举按常量名转换，找不到返回null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Converter<?> getConverter(Class<?> type) {
+        Class<?> boxed = box(type);
+        Converter<?> converter = converters.get(boxed);
+        if (converter == null && boxed.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) boxed;
+            converter = s -> Enum.valueOf(enumType, s.trim());
+            converters.put(boxed, converter);
+        }
+        return converter;
+    }
+
+    /**
+     * 为参数选择把请求参数的所有值(String[])转为参数类型的转换器
+     *
+     * @param type        参数类型
+     * @param genericType 参数的泛型类型，用于获取List/Set的元素类型
+     * @throws IllegalArgumentException 没有此类型的转换器
+     */
+    public ValueConverter getValueConverter(Class<?> type, Type genericType) {
+        //String：多个值以","拼接，例:msg=1&msg=2 -> "1,2"
+        if (type == String.class) {
+            return values -> values == null ? null : (values.length == 1 ? values[0] : String.join(",", values));
+        }
+        //数组：每个值转为元素类型，单个值时按","切分，例:ids=1,2,3
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            Converter<?> converter = requireConverter(componentType);
+            return values -> {
+                if (values == null) return null;
+                String[] items = split(values);
+                if (componentType == String.class) return items;
+                Object array = Array.newInstance(componentType, items.length);
+                for (int i = 0; i < items.length; i++) {
+                    Object value = convert(converter, items[i], componentType);
+                    //空值保留数组元素的默认值
+                    if (value != null) Array.set(array, i, value);
+                }
+                return array;
+            };
+        }
+        //List/Set：元素类型取自泛型参数，没有泛型时为String
+        if (Collection.class.isAssignableFrom(type)) {
+            Class<?> elementType = elementType(genericType);
+            Converter<?> converter = requireConverter(elementType);
+            boolean set = Set.class.isAssignableFrom(type);
+            return values -> {
+                if (values == null) return null;
+                String[] items = split(values);
+                Collection<Object> collection = set ? new LinkedHashSet<>() : new ArrayList<>(items.length);
+                for (String item : items) {
+                    collection.add(convert(converter, item, elementType));
+                }
+                return collection;
+            };
+        }
+        //单个值：取第一个值转换，基本类型缺失时使用默认值(0/false)
+        Converter<?> converter = requireConverter(type);
+        Object defaultValue = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        return values -> {
+            if (values == null || values.length == 0) return defaultValue;
+            Object value = convert(converter, values[0], type);
+            return value == null ? defaultValue : value;
+        };
+    }
+
+    /**
+     * 获取把请求参数绑定到POJO的绑定器，每个类只在第一次获取时解析
+     *
+     * @return 不能按POJO绑定的类型(JDK中的类型、有转换器的类型、没有public无参构造方法的类)返回null
+     */
+    public BeanBinder getBeanBinder(Class<?> type) {
+        BeanBinder binder = beanBinders.get(type);
+        if (binder == null && BeanBinder.isBindable(type, this)) {
+            binder = beanBinders.computeIfAbsent(type, t -> new BeanBinder(t, this));
+        }
+        return binder;
+    }
+
+    private Converter<?> requireConverter(Class<?> type) {
+        Converter<?> converter = getConverter(type);
+        if (converter == null) {
+            throw new IllegalArgumentException("no converter for type " + type.getName());
+        }
+        return converter;
+    }
+
+    //空串对于非String类型视为没有值
+    private static Object convert(Converter<?> converter, String value, Class<?> type) throws Exception {
+        if (value.isEmpty() && type != String.class) {
+            return null;
+        }
+        return converter.convert(value);
+    }
+
+    //单个值中含","时切分为多个值
+    private static String[] split(String[] values) {
+        if (values.length != 1 || values[0].indexOf(',') < 0) {
+            return values;
+        }
+        String value = values[0];
+        List<String> items = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == ',') {
+                items.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        items.add(value.substring(start));
+        return items.toArray(new String[0]);
+    }
+
+    private static Class<?> elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type arg = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (arg instanceof Class) {
+                return (Class<?>) arg;
+            }
+        }
+        return String.class;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        return type;
+    }
+
+    private static Boolean toBoolean(String source) {
+        String s = source.trim();
+        if ("true".equalsIgnoreCase(s) || "on".equalsIgnoreCase(s) || "yes".equalsIgnoreCase(s) || "1".equals(s)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equalsIgnoreCase(s) || "off".equalsIgnoreCase(s) || "no".equalsIgnoreCase(s) || "0".equals(s)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("invalid boolean value: " + source);
+    }
+
+    //支持"yyyy-MM-dd HH:mm:ss"和ISO格式"yyyy-MM-ddTHH:mm:ss"
+    private static LocalDateTime toLocalDateTime(String source) {
+        String s = source.trim();
+        return s.indexOf('T') > 0 ? LocalDateTime.parse(s) : LocalDateTime.parse(s, DATE_TIME);
+    }
+
+    //支持毫秒时间戳、"yyyy-MM-dd"、"yyyy-MM-dd HH:mm:ss"
+    private static Date toDate(String source) {
+        String s = source.trim();
+        boolean digits = !s.isEmpty();
+        for (int i = 0; i < s.length() && digits; i++) {
+            digits = Character.isDigit(s.charAt(i));
+        }
+        if (digits) {
+            return new Date(Long.parseLong(s));
+        }
+        if (s.length() == 10) {
+            return Date.from(LocalDate.parse(s).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        }
+        return Date.from(toLocalDateTime(s).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * 把请求参数的所有值转为参数类型，请求中没有此参数时values为null
+     */
+    @FunctionalInterface
+    public interface ValueConverter {
+        Object convert(String[] values) throws Exception;
+    }
+}
@@ -0,0 +1,21 @@
+package com.lee.framework.servlet.bind;
+
+/**
+ * 标注了@MyRequestParam(required = true)的参数在请求中不存在
+ */
+public class MissingRequestParamException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String paramName;
+
+    public MissingRequestParamException(String paramName) {
+        //客户端的错误,不需要堆栈,不填充堆栈以减少创建异常的开销
+        super("Required request parameter '" + paramName + "' is not present", null, false, false);
+        this.paramName = paramName;
+    }
+
+    public String getParamName() {
+        return paramName;
+    }
+}
@@ -0,0 +1,39 @@
+package com.lee.framework.servlet.bind;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.DateTimeException;
+
+/**
+ * 解析标注了@MyPathVariable的参数：dispatcher找到handler时已按url模板截取出所有路径变量的值，
+ * 启动时确定了变量在模板中的顺序，请求时按下标取值，转为参数的类型，不能转换时返回400
+ */
+public class PathVariableResolver implements ArgumentResolver {
+
+    //路径变量名
+    private final String name;
+    //保存路径变量值(String[])的请求属性名
+    private final String attributeName;
+    //变量在url模板中的顺序
+    private final int index;
+    //转为参数类型的转换器
+    private final ConverterRegistry.ValueConverter converter;
+
+    public PathVariableResolver(String name, String attributeName, int index, ConverterRegistry.ValueConverter converter) {
+        this.name = name;
+        this.attributeName = attributeName;
+        this.index = index;
+        this.converter = converter;
+    }
+
+    @Override
+    public Object resolve(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        String[] variables = (String[]) req.getAttribute(attributeName);
+        try {
+            return converter.convert(variables == null ? null : new String[]{variables[index]});
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new RequestBindingException(HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid value for path variable '" + name + "'", e);
+        }
+    }
+}
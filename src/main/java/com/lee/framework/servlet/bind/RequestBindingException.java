@@ -0,0 +1,26 @@
+package com.lee.framework.servlet.bind;
+
+/**
+ * 请求体或请求参数不能绑定到handler方法的参数：格式错误(400)、请求体过大(413)、不支持的Content-Type(415)
+ */
+public class RequestBindingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    //响应的状态码
+    private final int status;
+
+    public RequestBindingException(int status, String message) {
+        this(status, message, null);
+    }
+
+    public RequestBindingException(int status, String message, Throwable cause) {
+        //客户端的错误,不需要堆栈,不填充堆栈以减少创建异常的开销
+        super(message, cause, false, false);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,119 @@
+package com.lee.framework.servlet.bind;
+
+import com.lee.framework.json.Json;
+import com.lee.framework.json.JsonDeserializer;
+import com.lee.framework.json.JsonParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * 解析标注了@MyRequestBody的参数：
+ * JSON请求体(application/json、application/*+json，没有Content-Type时也按JSON处理)直接从req.getInputStream()流式反序列化，
+ * 表单请求体(application/x-www-form-urlencoded、multipart/form-data)按属性名绑定到POJO
+ * 反序列化器和绑定器在启动时按参数类型取得(已按类型缓存)，请求时不再按类型查找
+ * 请求体超过maxBytes时返回413：Content-Length超过时不读取，分块传输时读到超过的字节为止
+ */
+public class RequestBodyResolver implements ArgumentResolver {
+
+    //参数类型的JSON反序列化器
+    private final JsonDeserializer<?> deserializer;
+    //参数类型的表单绑定器,为null时不接受表单请求体
+    private final BeanBinder beanBinder;
+    //请求体的最大字节数,0表示不限制
+    private final long maxBytes;
+    //是否必须
+    private final boolean required;
+
+    public RequestBodyResolver(JsonDeserializer<?> deserializer, BeanBinder beanBinder, long maxBytes, boolean required) {
+        this.deserializer = deserializer;
+        this.beanBinder = beanBinder;
+        this.maxBytes = maxBytes;
+        this.required = required;
+    }
+
+    @Override
+    public Object resolve(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        long length = req.getContentLengthLong();
+        if (maxBytes > 0 && length > maxBytes) {
+            throw tooLarge();
+        }
+        String mediaType = mediaType(req.getContentType());
+        Object value;
+        if (mediaType == null || isJson(mediaType)) {
+            InputStream in = maxBytes > 0 ? new LimitedInputStream(req.getInputStream(), maxBytes) : req.getInputStream();
+            try {
+                value = Json.read(in, deserializer);
+            } catch (JsonParseException e) {
+                throw new RequestBindingException(HttpServletResponse.SC_BAD_REQUEST,
+                        "Malformed request body : " + e.getMessage(), e);
+            }
+        } else if (beanBinder != null
+                && ("application/x-www-form-urlencoded".equals(mediaType) || "multipart/form-data".equals(mediaType))) {
+            //表单由容器解析,容器自身也限制表单大小(如Tomcat的maxPostSize)
+            value = beanBinder.bind(req);
+        } else {
+            throw new RequestBindingException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    "Content type '" + mediaType + "' not supported");
+        }
+        if (value == null && required) {
+            throw new RequestBindingException(HttpServletResponse.SC_BAD_REQUEST, "Required request body is missing");
+        }
+        return value;
+    }
+
+    private RequestBindingException tooLarge() {
+        return new RequestBindingException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                "Request body exceeds " + maxBytes + " bytes");
+    }
+
+    //小写的"type/subtype",忽略";"后的参数,没有Content-Type返回null
+    private static String mediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isJson(String mediaType) {
+        return "application/json".equals(mediaType) || mediaType.startsWith("application/") && mediaType.endsWith("+json");
+    }
+
+    /**
+     * 读取超过maxBytes个字节时抛出413，用于没有Content-Length(分块传输)或Content-Length不可信的请求体
+     */
+    private class LimitedInputStream extends FilterInputStream {
+
+        //还可以读取的字节数
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw tooLarge();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            //多读一个字节,恰好maxBytes个字节的请求体不会被误判
+            int n = super.read(b, off, (int) Math.min(len, remaining + 1));
+            if (n > 0 && (remaining -= n) < 0) {
+                throw tooLarge();
+            }
+            return n;
+        }
+    }
+}
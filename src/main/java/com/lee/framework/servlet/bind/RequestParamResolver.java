@@ -0,0 +1,44 @@
+package com.lee.framework.servlet.bind;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.DateTimeException;
+
+/**
+ * 解析标注了@MyRequestParam的参数：按参数名取出请求参数的所有值，转为参数的类型
+ * required为true时请求中必须有此参数，参数值不能转为参数类型时返回400
+ */
+public class RequestParamResolver implements ArgumentResolver {
+
+    //请求参数名
+    private final String paramName;
+    //转为参数类型的转换器
+    private final ConverterRegistry.ValueConverter converter;
+    //是否必须
+    private final boolean required;
+
+    public RequestParamResolver(String paramName, ConverterRegistry.ValueConverter converter, boolean required) {
+        this.paramName = paramName;
+        this.converter = converter;
+        this.required = required;
+    }
+
+    @Override
+    public Object resolve(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        String[] values = req.getParameterValues(paramName);
+        if (required && values == null) {
+            throw new MissingRequestParamException(paramName);
+        }
+        try {
+            return converter.convert(values);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            //客户端传入的值格式错误(如int参数传了"abc"),不是服务端错误
+            throw new RequestBindingException(HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid value for parameter '" + paramName + "'", e);
+        }
+    }
+
+    public String getParamName() {
+        return paramName;
+    }
+}